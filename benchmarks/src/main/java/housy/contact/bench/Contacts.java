@@ -0,0 +1,47 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Generates the same synthetic address book for a given size on every run.
+ */
+public final class Contacts {
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+        "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+        "Thomas", "Sarah", "Charles", "Karen", "Daan", "Sanne", "Lucas", "Emma"
+    };
+
+    private static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+        "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+        "Thomas", "Taylor", "Moore", "Jackson", "Martin", "de Vries", "van Dijk", "Bakker"
+    };
+
+    private static final String[] DOMAINS = {
+        "example.com", "mail.com", "acme.com", "contoso.org", "housy.net"
+    };
+
+    private Contacts() {
+    }
+
+    public static List<Contact> generate(int size) {
+        Random random = new Random(42);
+        List<Contact> contacts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String name = first + " " + last + " " + Integer.toString(i, 36);
+            String phone = String.format("+31 6 %08d", random.nextInt(100_000_000));
+            String email = first.toLowerCase() + "." + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            Contact c = new Contact(name, phone, email);
+            c.setNotes(random.nextInt(10) == 0 ? "Met at the conference in " + (2000 + random.nextInt(25)) : " ");
+            contacts.add(c);
+        }
+        return contacts;
+    }
+}
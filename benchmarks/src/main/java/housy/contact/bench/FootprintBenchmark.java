@@ -0,0 +1,78 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import housy.contact.ContactSerializer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * Measures how much heap a book retains per contact, both for contacts
+ * created in memory and for contacts loaded from a snapshot. The result is
+ * reported as the bytesPerContact counter next to the time it took.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class FootprintBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"generated", "loaded"})
+    public String source;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+
+        public long bytesPerContact;
+    }
+
+    private Path directory;
+    private ContactSerializer serializer;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("contacts-bench");
+        serializer = new ContactSerializer(directory);
+        serializer.setMappedThreshold(Long.MAX_VALUE);
+        serializer.save(Contacts.generate(size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public List<Contact> retained(Footprint footprint) throws IOException, ClassNotFoundException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+        List<Contact> contacts = source.equals("loaded") ? serializer.loadContacts() : Contacts.generate(size);
+        long after = usedHeap(memory);
+        footprint.bytesPerContact = (after - before) / size;
+        return contacts;
+    }
+}
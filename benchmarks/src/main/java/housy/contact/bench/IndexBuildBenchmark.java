@@ -0,0 +1,49 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import housy.contact.SearchIndex;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class IndexBuildBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Contact> contacts;
+    private SearchIndex built;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        contacts = Contacts.generate(size);
+        built = new SearchIndex();
+        built.addAll(contacts);
+    }
+
+    @Benchmark
+    public SearchIndex addAll() {
+        SearchIndex index = new SearchIndex();
+        index.addAll(contacts);
+        return index;
+    }
+
+    /*
+     * Takes one contact out of a full index and files it again. With -prof gc
+     * this shows what indexing a single contact allocates.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void reindexOne() {
+        Contact c = contacts.get(next++ % contacts.size());
+        built.remove(c);
+        built.addContact(c);
+    }
+}
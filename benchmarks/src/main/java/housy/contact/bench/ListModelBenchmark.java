@@ -0,0 +1,74 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import housy.contact.ContactListModel;
+import housy.contact.NameIndex;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.DefaultListModel;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ListModelBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Contact> contacts;
+    private List<String> names;
+    private NameIndex nameIndex;
+    private ContactListModel model;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        contacts = Contacts.generate(size);
+        nameIndex = new NameIndex();
+        nameIndex.addAll(contacts);
+        names = nameIndex.names();
+        model = new ContactListModel();
+        model.setNames(nameIndex);
+    }
+
+    /*
+     * What MainGUI.updateList used to do after every change.
+     */
+    @Benchmark
+    public DefaultListModel<String> rebuildDefaultModel() {
+        DefaultListModel<String> dlm = new DefaultListModel<>();
+        dlm.addAll(contacts.stream().map(Contact::getName).sorted().toList());
+        return dlm;
+    }
+
+    /*
+     * What MainGUI.updateList does now: the names come out of the name index
+     * in order, nothing is sorted.
+     */
+    @Benchmark
+    public ContactListModel rebuildContactListModel() {
+        ContactListModel m = new ContactListModel();
+        m.setNames(nameIndex);
+        return m;
+    }
+
+    @Benchmark
+    public void addAndRemoveOne() {
+        Contact c = contacts.get(next++ % contacts.size());
+        nameIndex.remove(c);
+        model.remove(c.getName());
+        nameIndex.add(c);
+        model.add(c.getName());
+    }
+
+    @Benchmark
+    public void renameOne() {
+        String name = names.get(next++ % names.size());
+        model.rename(name, name + " x");
+        model.rename(name + " x", name);
+    }
+}
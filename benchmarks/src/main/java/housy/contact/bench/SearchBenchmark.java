@@ -0,0 +1,44 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import housy.contact.SearchIndex;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /*
+     * A common bigram, a common name, a phrase across two tokens, a term
+     * that matches nothing and a name with typos.
+     */
+    @Param({"an", "smith", "john sm", "qzx", "jonh smiht"})
+    public String term;
+
+    private SearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new SearchIndex();
+        index.addAll(Contacts.generate(size));
+    }
+
+    @Benchmark
+    public List<Contact> search() {
+        return index.search(term);
+    }
+
+    @Benchmark
+    public List<Contact> searchFuzzy() {
+        return index.searchFuzzy(term);
+    }
+}
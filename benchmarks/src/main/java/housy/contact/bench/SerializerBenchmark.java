@@ -0,0 +1,87 @@
+package housy.contact.bench;
+
+import housy.contact.Contact;
+import housy.contact.ContactSerializer;
+import housy.contact.SearchIndex;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SerializerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private Path directory;
+    private ContactSerializer serializer;
+    private List<Contact> contacts;
+
+    @Setup
+    public void setUp() throws IOException, ClassNotFoundException {
+        directory = Files.createTempDirectory("contacts-bench");
+        serializer = open();
+        contacts = Contacts.generate(size);
+        serializer.save(contacts);
+
+        // Leaves the index of the snapshot next to it.
+        ContactSerializer indexing = open();
+        List<Contact> loaded = new ArrayList<>();
+        indexing.loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, loaded::addAll, new SearchIndex());
+        indexing.save(loaded);
+    }
+
+    private ContactSerializer open() throws IOException {
+        ContactSerializer result = new ContactSerializer(directory);
+        result.setMappedThreshold(mapped ? 0 : Long.MAX_VALUE);
+        return result;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        serializer.save(contacts);
+    }
+
+    @Benchmark
+    public List<Contact> load() throws IOException, ClassNotFoundException {
+        return serializer.loadContacts();
+    }
+
+    @Benchmark
+    public SearchIndex loadAndIndex() throws IOException, ClassNotFoundException {
+        SearchIndex index = new SearchIndex();
+        index.addAll(serializer.loadContacts());
+        return index;
+    }
+
+    @Benchmark
+    public SearchIndex loadIndexed() throws IOException, ClassNotFoundException {
+        SearchIndex index = new SearchIndex();
+        open().loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+        }, index);
+        return index;
+    }
+}
@@ -0,0 +1,161 @@
+package housy.contact;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Runs without a window, for scripts, cron jobs and servers without a
+ * display. The actions run in the order they are given:
+ *
+ *   --dir <directory>   use the contacts in this directory, must come first
+ *   --import <file>     add the contacts of a CSV or vCard file
+ *   --query <term>      print the contacts matching a search term
+ *   --fuzzy <term>      the same, allowing typos in names
+ *   --export <file>     write all contacts to a CSV, vCard or JSON file
+ *   --compact           fold the journal into a new snapshot
+ *   --metrics           print the metrics when done
+ *
+ * Matches are printed one per line as name, phone and email separated by
+ * tabs. Imports are saved as soon as they are read, so an action that
+ * fails later does not undo them. Must not run while the application has
+ * the same contacts open.
+ */
+final class Cli {
+
+    static final int OK = 0;
+    static final int FAILED = 1;
+    static final int USAGE = 2;
+
+    private static final String HELP = """
+            Usage: contacts [--dir <directory>] <action>...
+              --import <file>     add the contacts of a CSV or vCard file
+              --query <term>      print the contacts matching a search term
+              --fuzzy <term>      the same, allowing typos in names
+              --export <file>     write all contacts to a CSV, vCard or JSON file
+              --compact           fold the journal into a new snapshot
+              --metrics           print the metrics when done""";
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final ContactStore contacts = new ContactStore();
+    private final NameIndex names = new NameIndex();
+    private final SearchIndex index = new SearchIndex();
+    private ContactSerializer serializer;
+    private boolean metrics;
+
+    private Cli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        return run(args, System.out, System.err);
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        return new Cli(out, err).execute(args);
+    }
+
+    private int usage(String message) {
+        err.println(message);
+        err.println(HELP);
+        return USAGE;
+    }
+
+    private int execute(String[] args) {
+        int first = 0;
+        Path dir = null;
+        if (args.length >= 2 && args[0].equals("--dir")) {
+            dir = Path.of(args[1]);
+            first = 2;
+        }
+        if (first == args.length)
+            return usage("Nothing to do.");
+
+        // Checks every option before touching the contacts.
+        for (int i = first; i < args.length; i++) {
+            switch (args[i]) {
+                case "--import", "--query", "--fuzzy", "--export" -> {
+                    if (++i == args.length)
+                        return usage(args[i - 1] + " needs an argument.");
+                }
+                case "--compact" -> {
+                }
+                case "--metrics" -> metrics = true;
+                case "--help" -> {
+                    out.println(HELP);
+                    return OK;
+                }
+                default -> {
+                    return usage("Unknown option: " + args[i]);
+                }
+            }
+        }
+
+        Metrics.gauge("index.contacts", index::size);
+        Metrics.gauge("index.grams", index::gramCount);
+        Metrics.gauge("index.words", index::wordCount);
+        try {
+            serializer = dir == null ? new ContactSerializer("contacts.cs") : new ContactSerializer(dir);
+            serializer.loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+                contacts.addAll(batch);
+                names.addAll(batch);
+            }, index);
+
+            for (int i = first; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--import" -> importContacts(Path.of(args[++i]));
+                    case "--query" -> print(index.search(args[++i]));
+                    case "--fuzzy" -> print(index.searchFuzzy(args[++i]));
+                    case "--export" -> exportContacts(Path.of(args[++i]));
+                    case "--compact" -> serializer.save(contacts.toList());
+                }
+            }
+            return OK;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            err.println("Failed: " + e);
+            return FAILED;
+        } finally {
+            if (serializer != null)
+                serializer.close();
+            if (metrics)
+                err.println(Metrics.report());
+        }
+    }
+
+    private void importContacts(Path path) throws IOException {
+        List<Contact> imported = new ArrayList<>();
+        long read = ContactImporter.read(path, ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+            for (Contact c : batch) {
+                if (names.add(c))
+                    imported.add(c);
+            }
+        });
+        contacts.addAll(imported);
+        index.addAll(imported);
+        // Saved right away so an action failing later does not lose them.
+        if (!imported.isEmpty())
+            serializer.save(contacts.toList());
+        err.println("Imported " + imported.size() + " contacts, skipped " + (read - imported.size()) + " already there.");
+    }
+
+    private void exportContacts(Path path) throws IOException {
+        ContactExporter.write(path, contacts, count -> {
+        });
+        err.println("Exported " + contacts.size() + " contacts.");
+    }
+
+    private static String column(String value) {
+        return value == null || value.isBlank() ? "" : value.replaceAll("[\\t\\r\\n]+", " ");
+    }
+
+    private void print(List<Contact> found) {
+        for (Contact c : found) {
+            out.println(column(c.getName()) + "\t" + column(c.getPhone()) + "\t" + column(c.getEmail()));
+        }
+    }
+}
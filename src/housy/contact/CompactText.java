@@ -0,0 +1,89 @@
+package housy.contact;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Space saving encodings for contact fields. A value is kept either as a
+ * String or as a byte[] in one of two encodings, whichever the value fits:
+ * phone numbers pack two characters into a byte, other text stores one
+ * byte per character when it is Latin-1. Both drop the String object
+ * around the bytes. Blank values are shared instead of stored.
+ */
+final class CompactText {
+
+    static final String BLANK = " ";
+    static final String EMPTY = "";
+
+    private static final String PHONE_CHARS = "0123456789 +-().";
+    private static final int MAX_PACKED_LENGTH = 255;
+
+    private CompactText() {
+    }
+
+    /*
+     * The shared instance for the values the application uses to mean
+     * "nothing", the value itself otherwise.
+     */
+    static String canonical(String value) {
+        if (value == null || value.equals(BLANK))
+            return BLANK;
+        if (value.isEmpty())
+            return EMPTY;
+        return value;
+    }
+
+    /*
+     * Phone numbers made of digits, spaces and the usual punctuation are
+     * stored four bits per character, after a length byte. Anything else
+     * stays a String.
+     */
+    static Object packPhone(String value) {
+        value = canonical(value);
+        if (value.isBlank() || value.length() > MAX_PACKED_LENGTH)
+            return value;
+
+        byte[] packed = new byte[1 + (value.length() + 1) / 2];
+        packed[0] = (byte) value.length();
+        for (int i = 0; i < value.length(); i++) {
+            int code = PHONE_CHARS.indexOf(value.charAt(i));
+            if (code < 0)
+                return value;
+            packed[1 + i / 2] |= (byte) (i % 2 == 0 ? code << 4 : code);
+        }
+        return packed;
+    }
+
+    static String unpackPhone(Object value) {
+        if (!(value instanceof byte[]))
+            return (String) value;
+
+        byte[] packed = (byte[]) value;
+        int length = packed[0] & 0xFF;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int b = packed[1 + i / 2];
+            chars[i] = PHONE_CHARS.charAt(i % 2 == 0 ? (b >> 4) & 0xF : b & 0xF);
+        }
+        return new String(chars);
+    }
+
+    /*
+     * Latin-1 text is stored as its bytes, other text stays a String.
+     */
+    static Object packLatin1(String value) {
+        value = canonical(value);
+        if (value.isBlank())
+            return value;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF)
+                return value;
+        }
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static String unpackLatin1(Object value) {
+        if (!(value instanceof byte[]))
+            return (String) value;
+        return new String((byte[]) value, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,43 +1,97 @@
 package housy.contact;
 
-import java.io.Serializable;
-import java.util.*;
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/*
+ * Fields are kept in the compact forms of CompactText: blank values share
+ * one instance, phone numbers are packed and the part of an email address
+ * before the domain is stored as bytes while the domain, which many
+ * contacts have in common, is shared. The serialized form is still the
+ * four strings it always was.
+ *
+ * Every contact gets an id when it is created or read, which never changes
+ * and is not saved. Contacts are equal only to themselves, so their hash
+ * stays the same through edits.
+ */
 public class Contact implements Serializable {
     
-    private String name = " ";
-    private String phone = " ";
-    private String email = " ";
-    private String notes = " ";
+    private static final long serialVersionUID = -1813895824193927566L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("phone", String.class),
+        new ObjectStreamField("email", String.class),
+        new ObjectStreamField("notes", String.class)
+    };
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private transient long id = NEXT_ID.incrementAndGet();
+
+    private String name = CompactText.BLANK;
+    private Object phone = CompactText.BLANK;
+    private Object emailUser = CompactText.BLANK;
+    private String emailDomain;
+    private String notes = CompactText.BLANK;
     
     public Contact(String name, String phone, String email) {
-        setName(name);
-        setPhone(phone);
-        setEmail(email);
+        assignName(name);
+        assignPhone(phone);
+        assignEmail(email);
+    }
+
+    protected Contact() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    private void assignName(String name) {
+        this.name = CompactText.canonical(name);
+    }
+
+    private void assignPhone(String phone) {
+        this.phone = CompactText.packPhone(phone);
+    }
+
+    private void assignEmail(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        if (at < 0) {
+            emailUser = CompactText.packLatin1(email);
+            emailDomain = null;
+        } else {
+            emailUser = CompactText.packLatin1(email.substring(0, at));
+            emailDomain = email.substring(at).intern();
+        }
+    }
+
+    private void assignNotes(String notes) {
+        this.notes = CompactText.canonical(notes);
     }
 
     public String getName() {
         return name;
     }
 
-    public final void setName(String name) {
-        this.name = name == null ? " " : name;
+    public void setName(String name) {
+        assignName(name);
     }
 
-    public final String getPhone() {
-        return phone;
+    public String getPhone() {
+        return CompactText.unpackPhone(phone);
     }
 
-    public final void setPhone(String phone) {
-        this.phone = phone == null ? " " : phone;
+    public void setPhone(String phone) {
+        assignPhone(phone);
     }
 
     public String getEmail() {
-        return email;
+        String user = CompactText.unpackLatin1(emailUser);
+        return emailDomain == null ? user : user + emailDomain;
     }
 
-    public final void setEmail(String email) {
-        this.email = email == null ? " " : email;
+    public void setEmail(String email) {
+        assignEmail(email);
     }
 
     public String getNotes() {
@@ -45,34 +99,34 @@ public class Contact implements Serializable {
     }
 
     public void setNotes(String notes) {
-        this.notes = notes;
+        assignNotes(notes);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", getName());
+        fields.put("phone", getPhone());
+        fields.put("email", getEmail());
+        fields.put("notes", getNotes());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = NEXT_ID.incrementAndGet();
+        assignName((String) fields.get("name", null));
+        assignPhone((String) fields.get("phone", null));
+        assignEmail((String) fields.get("email", null));
+        assignNotes((String) fields.get("notes", null));
     }
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 59 * hash + Objects.hashCode(this.name);
-        hash = 59 * hash + Objects.hashCode(this.phone);
-        hash = 59 * hash + Objects.hashCode(this.email);
-        hash = 59 * hash + Objects.hashCode(this.notes);
-        return hash;
+        return Long.hashCode(id);
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        final Contact other = (Contact) obj;
-        if (!Objects.equals(this.name, other.name))
-            return false;
-        if (!Objects.equals(this.phone, other.phone))
-            return false;
-        if (!Objects.equals(this.email, other.email))
-            return false;
-        return Objects.equals(this.notes, other.notes);
+        return obj instanceof Contact && ((Contact) obj).id == id;
     }
 }
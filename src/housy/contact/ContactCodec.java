@@ -0,0 +1,145 @@
+package housy.contact;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Snapshot layout: magic, version, contact count and the records. Since
+ * version 2 the records are sorted by name and followed by a table with
+ * the offset of every record, so a mapped snapshot can be opened without
+ * reading the records. Version 1 files are still read.
+ */
+final class ContactCodec {
+
+    static final int MAGIC = 0x43544353;
+    static final int VERSION = 2;
+    static final int UNSORTED_VERSION = 1;
+    static final int LEGACY_MAGIC = 0xACED0005;
+
+    private ContactCodec() {
+    }
+
+    static void writeHeader(DataOutput out, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(count);
+    }
+
+    static int readHeader(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC)
+            throw new IOException("Not a contact file.");
+        int version = in.readUnsignedByte();
+        if (version != VERSION && version != UNSORTED_VERSION)
+            throw new IOException("Unsupported contact file version: " + version + ".");
+        return in.readInt();
+    }
+
+    static byte[] encode(Contact c) {
+        return encode(c, c.getName());
+    }
+
+    /*
+     * Encodes the contact under a name read from it earlier.
+     */
+    static byte[] encode(Contact c, String name) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        writeField(body, name);
+        writeField(body, c.getPhone());
+        writeField(body, c.getEmail());
+        writeField(body, c.getNotes());
+        return body.toByteArray();
+    }
+
+    static Contact decode(byte[] buf, int off, int len) throws IOException {
+        int[] pos = {off};
+        int end = off + len;
+        String name = readField(buf, pos, end);
+        String phone = readField(buf, pos, end);
+        String email = readField(buf, pos, end);
+        String notes = readField(buf, pos, end);
+        Contact c = new Contact(name, phone, email);
+        c.setNotes(notes);
+        return c;
+    }
+
+    static void writeRecord(DataOutput out, Contact c, String name) throws IOException {
+        byte[] body = encode(c, name);
+        writeVarInt(out, body.length);
+        out.write(body);
+    }
+
+    static Contact readRecord(DataInput in) throws IOException {
+        int len = readVarInt(in);
+        byte[] body = new byte[len];
+        in.readFully(body);
+        return decode(body, 0, len);
+    }
+
+    static void writeField(ByteArrayOutputStream out, String value) {
+        byte[] bytes = (value == null ? " " : value).getBytes(StandardCharsets.UTF_8);
+        int v = bytes.length;
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String readField(byte[] buf, int[] pos, int end) throws IOException {
+        int len = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (pos[0] >= end || shift > 28)
+                throw new IOException("Corrupt contact record.");
+            b = buf[pos[0]++];
+            len |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        if (len < 0 || pos[0] + len > end)
+            throw new IOException("Corrupt contact record.");
+        String value = new String(buf, pos[0], len, StandardCharsets.UTF_8);
+        pos[0] += len;
+        return value;
+    }
+
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28 || !in.hasRemaining())
+                throw new IOException("Corrupt varint.");
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28)
+                throw new IOException("Corrupt contact record.");
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
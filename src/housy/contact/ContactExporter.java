@@ -0,0 +1,206 @@
+package housy.contact;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/*
+ * Writes contacts to CSV, vCard or JSON, picked by the file extension. Every
+ * contact goes straight to a buffered writer, so the output is never held
+ * in memory whatever the size of the book.
+ */
+final class ContactExporter {
+
+    static final int PROGRESS_INTERVAL = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int VCARD_LINE_LENGTH = 75;
+
+    private enum Format {
+        CSV, VCARD, JSON
+    }
+
+    private ContactExporter() {
+    }
+
+    private static Format format(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".vcf") || name.endsWith(".vcard"))
+            return Format.VCARD;
+        if (name.endsWith(".json"))
+            return Format.JSON;
+        return Format.CSV;
+    }
+
+    /*
+     * Reports the number of contacts written every PROGRESS_INTERVAL
+     * contacts. The contacts must not change while they are written.
+     */
+    static void write(Path path, Iterable<Contact> contacts, IntConsumer progress) throws IOException {
+        Format format = format(path);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (format == Format.CSV)
+                out.write("Name,Phone,Email,Notes\r\n");
+            else if (format == Format.JSON)
+                out.write("[");
+
+            int count = 0;
+            for (Contact c : contacts) {
+                switch (format) {
+                    case CSV -> writeCsv(out, c);
+                    case VCARD -> writeVCard(out, c);
+                    case JSON -> writeJson(out, c, count == 0);
+                }
+                if (++count % PROGRESS_INTERVAL == 0)
+                    progress.accept(count);
+            }
+
+            if (format == Format.JSON)
+                out.write(count == 0 ? "]\n" : "\n]\n");
+            progress.accept(count);
+        }
+    }
+
+    private static String value(String value) {
+        return value == null || value.isBlank() ? "" : value;
+    }
+
+    private static void writeCsv(Writer out, Contact c) throws IOException {
+        writeCsvField(out, c.getName());
+        out.write(',');
+        writeCsvField(out, c.getPhone());
+        out.write(',');
+        writeCsvField(out, c.getEmail());
+        out.write(',');
+        writeCsvField(out, c.getNotes());
+        out.write("\r\n");
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        value = value(value);
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == ';' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"')
+                out.write('"');
+            out.write(ch);
+        }
+        out.write('"');
+    }
+
+    private static void writeVCard(Writer out, Contact c) throws IOException {
+        out.write("BEGIN:VCARD\r\nVERSION:3.0\r\n");
+        writeVCardLine(out, "FN", c.getName());
+        writeVCardLine(out, "N", structuredName(c.getName()), false);
+        writeVCardLine(out, "TEL", c.getPhone());
+        writeVCardLine(out, "EMAIL", c.getEmail());
+        writeVCardLine(out, "NOTE", c.getNotes());
+        out.write("END:VCARD\r\n");
+    }
+
+    /*
+     * N holds the family name apart from the given names. The last word of
+     * the name is taken as the family name, the words before it as the
+     * given names; a name of one word is all family name.
+     */
+    private static String structuredName(String name) {
+        name = value(name).strip();
+        int split = name.length();
+        while (split > 0 && !Character.isWhitespace(name.charAt(split - 1)))
+            split--;
+        String given = name.substring(0, split).strip();
+        return escapeVCard(name.substring(split)) + ";" + escapeVCard(given) + ";;;";
+    }
+
+    private static void writeVCardLine(Writer out, String property, String value) throws IOException {
+        writeVCardLine(out, property, escapeVCard(value(value)), true);
+    }
+
+    /*
+     * Lines longer than 75 characters are folded, continuation lines start
+     * with a space.
+     */
+    private static void writeVCardLine(Writer out, String property, String escaped, boolean skipEmpty) throws IOException {
+        if (skipEmpty && escaped.isEmpty())
+            return;
+
+        String line = property + ":" + escaped;
+        int start = 0;
+        int limit = VCARD_LINE_LENGTH;
+        while (line.length() - start > limit) {
+            int end = start + limit;
+            if (Character.isHighSurrogate(line.charAt(end - 1)))
+                end--;
+            out.write(line, start, end - start);
+            out.write("\r\n ");
+            start = end;
+            limit = VCARD_LINE_LENGTH - 1;
+        }
+        out.write(line, start, line.length() - start);
+        out.write("\r\n");
+    }
+
+    private static String escapeVCard(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\', ',', ';' -> result.append('\\').append(ch);
+                case '\n' -> result.append("\\n");
+                case '\r' -> {
+                }
+                default -> result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static void writeJson(Writer out, Contact c, boolean first) throws IOException {
+        out.write(first ? "\n  {\"name\": " : ",\n  {\"name\": ");
+        writeJsonString(out, c.getName());
+        out.write(", \"phone\": ");
+        writeJsonString(out, c.getPhone());
+        out.write(", \"email\": ");
+        writeJsonString(out, c.getEmail());
+        out.write(", \"notes\": ");
+        writeJsonString(out, c.getNotes());
+        out.write('}');
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        value = value(value);
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (ch < 0x20)
+                        out.write(String.format("\\u%04x", (int) ch));
+                    else
+                        out.write(ch);
+                }
+            }
+        }
+        out.write('"');
+    }
+}
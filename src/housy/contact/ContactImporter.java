@@ -0,0 +1,378 @@
+package housy.contact;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/*
+ * Reads contacts from CSV and vCard files one record at a time and hands
+ * them out in batches, so a file of any size can be imported while only a
+ * single batch is held by the reader.
+ */
+final class ContactImporter {
+
+    private static final String BOM = "\uFEFF";
+    /*
+     * A quoted CSV field longer than this is taken for a quote that is never
+     * closed, which would otherwise pull the rest of the file into one field.
+     */
+    private static final int MAX_FIELD_LENGTH = 1 << 16;
+
+    private ContactImporter() {
+    }
+
+    static boolean isVCard(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".vcf") || name.endsWith(".vcard");
+    }
+
+    /*
+     * Records without a name are skipped. Returns the number of contacts
+     * read.
+     */
+    static long read(Path path, int batchSize, Consumer<List<Contact>> consumer) throws IOException {
+        long count = 0;
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            RecordReader reader = isVCard(path) ? new VCardReader(in) : new CsvReader(in);
+            List<Contact> batch = new ArrayList<>(batchSize);
+            Contact c;
+            while ((c = reader.next()) != null) {
+                batch.add(c);
+                count++;
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty())
+                consumer.accept(batch);
+        }
+        return count;
+    }
+
+    private static Contact create(String name, String phone, String email, String notes) {
+        name = clean(name);
+        if (name.isEmpty())
+            return null;
+
+        Contact c = new Contact(name, clean(phone), clean(email));
+        c.setNotes(notes == null || notes.isBlank() ? " " : notes);
+        return c;
+    }
+
+    /*
+     * Names, phone numbers and emails are stored the way the editor stores
+     * them.
+     */
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('/', ' ').trim();
+    }
+
+    private interface RecordReader {
+
+        /*
+         * The next contact in the file, or null at its end.
+         */
+        Contact next() throws IOException;
+    }
+
+    /*
+     * Quoted fields may contain delimiters, doubled quotes and line breaks.
+     * The delimiter is a comma, semicolon or tab, whichever the first line
+     * uses. When the first line names the columns they are matched by name,
+     * otherwise the columns are name, phone, email and notes.
+     */
+    private static final class CsvReader implements RecordReader {
+
+        private final BufferedReader in;
+        private int lineNumber;
+        private char delimiter = ',';
+        private int name = 0;
+        private int given = -1;
+        private int family = -1;
+        private int phone = 1;
+        private int email = 2;
+        private int notes = 3;
+        private List<String> first;
+
+        private CsvReader(BufferedReader in) throws IOException {
+            this.in = in;
+            String line = readLine();
+            if (line == null)
+                return;
+            if (line.startsWith(BOM))
+                line = line.substring(1);
+            delimiter = detectDelimiter(line);
+            List<String> row = readRecord(line);
+            if (!readHeader(row))
+                first = row;
+        }
+
+        private String readLine() throws IOException {
+            String line = in.readLine();
+            if (line != null)
+                lineNumber++;
+            return line;
+        }
+
+        private static char detectDelimiter(String line) {
+            char best = ',';
+            long most = line.chars().filter(ch -> ch == ',').count();
+            for (char candidate : new char[] {';', '\t'}) {
+                long count = line.chars().filter(ch -> ch == candidate).count();
+                if (count > most) {
+                    best = candidate;
+                    most = count;
+                }
+            }
+            return best;
+        }
+
+        private boolean readHeader(List<String> row) {
+            int name = -1, given = -1, family = -1, phone = -1, email = -1, notes = -1;
+            for (int i = 0; i < row.size(); i++) {
+                String column = row.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+                if (column.endsWith("type") || column.endsWith("label"))
+                    continue;
+                if (name < 0 && (column.equals("name") || column.equals("fullname") || column.equals("displayname")))
+                    name = i;
+                else if (given < 0 && (column.equals("firstname") || column.equals("givenname")))
+                    given = i;
+                else if (family < 0 && (column.equals("lastname") || column.equals("familyname") || column.equals("surname")))
+                    family = i;
+                else if (phone < 0 && (column.startsWith("phone") || column.startsWith("telephone") || column.startsWith("mobile")))
+                    phone = i;
+                else if (email < 0 && column.startsWith("email"))
+                    email = i;
+                else if (notes < 0 && column.startsWith("note"))
+                    notes = i;
+            }
+            if (name < 0 && given < 0 && family < 0)
+                return false;
+
+            this.name = name;
+            this.given = given;
+            this.family = family;
+            this.phone = phone;
+            this.email = email;
+            this.notes = notes;
+            return true;
+        }
+
+        @Override
+        public Contact next() throws IOException {
+            while (true) {
+                List<String> row;
+                if (first != null) {
+                    row = first;
+                    first = null;
+                } else {
+                    String line = readLine();
+                    if (line == null)
+                        return null;
+                    row = readRecord(line);
+                }
+
+                String fullName = get(row, name);
+                if (fullName.isBlank())
+                    fullName = (get(row, given) + " " + get(row, family)).trim();
+                Contact c = create(fullName, get(row, phone), get(row, email), get(row, notes));
+                if (c != null)
+                    return c;
+            }
+        }
+
+        private static String get(List<String> row, int column) {
+            return column < 0 || column >= row.size() ? "" : row.get(column);
+        }
+
+        private List<String> readRecord(String line) throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int start = lineNumber;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted)
+                        break;
+                    // A quoted field goes on on the next line.
+                    if (field.length() > MAX_FIELD_LENGTH)
+                        throw new IOException("The quote opened on line " + start + " is never closed.");
+                    line = readLine();
+                    if (line == null)
+                        break;
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+
+                char ch = line.charAt(i++);
+                if (quoted) {
+                    if (ch != '"') {
+                        field.append(ch);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(ch);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /*
+     * Reads the FN, N, TEL, EMAIL and NOTE properties of every card, taking
+     * the first of each. Folded lines are joined and quoted-printable values
+     * from older cards are decoded.
+     */
+    private static final class VCardReader implements RecordReader {
+
+        private final BufferedReader in;
+        private String lookahead;
+
+        private VCardReader(BufferedReader in) throws IOException {
+            this.in = in;
+            lookahead = in.readLine();
+            if (lookahead != null && lookahead.startsWith(BOM))
+                lookahead = lookahead.substring(1);
+        }
+
+        private String readLine() throws IOException {
+            if (lookahead == null)
+                return null;
+
+            StringBuilder line = new StringBuilder(lookahead);
+            lookahead = in.readLine();
+            while (lookahead != null && !lookahead.isEmpty() && (lookahead.charAt(0) == ' ' || lookahead.charAt(0) == '\t')) {
+                line.append(lookahead, 1, lookahead.length());
+                lookahead = in.readLine();
+            }
+            return line.toString();
+        }
+
+        @Override
+        public Contact next() throws IOException {
+            String fn = null, n = null, tel = null, email = null, note = null;
+            boolean inCard = false;
+            String line;
+            while ((line = readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0)
+                    continue;
+
+                String params = line.substring(0, colon).toUpperCase(Locale.ROOT);
+                String property = params;
+                int semicolon = property.indexOf(';');
+                if (semicolon >= 0)
+                    property = property.substring(0, semicolon);
+                property = property.substring(property.lastIndexOf('.') + 1);
+                String value = line.substring(colon + 1);
+
+                if (property.equals("BEGIN") && value.equalsIgnoreCase("VCARD")) {
+                    inCard = true;
+                    fn = n = tel = email = note = null;
+                    continue;
+                }
+                if (!inCard)
+                    continue;
+                if (property.equals("END") && value.equalsIgnoreCase("VCARD")) {
+                    inCard = false;
+                    String name = fn;
+                    if ((name == null || name.isBlank()) && n != null)
+                        name = formatName(n);
+                    Contact c = create(name, tel, email, note);
+                    if (c != null)
+                        return c;
+                    continue;
+                }
+
+                if (params.contains("QUOTED-PRINTABLE"))
+                    value = decodeQuotedPrintable(value);
+                switch (property) {
+                    case "FN" -> fn = fn == null ? unescape(value) : fn;
+                    case "N" -> n = n == null ? value : n;
+                    case "TEL" -> tel = tel == null ? unescape(value) : tel;
+                    case "EMAIL" -> email = email == null ? unescape(value) : email;
+                    case "NOTE" -> note = note == null ? unescape(value) : note;
+                    default -> {
+                    }
+                }
+            }
+            return null;
+        }
+
+        /*
+         * N holds family name, given names, additional names, prefixes and
+         * suffixes, in that order.
+         */
+        private static String formatName(String n) {
+            String[] parts = n.split("(?<!\\\\);", -1);
+            StringBuilder name = new StringBuilder();
+            int[] order = {3, 1, 2, 0, 4};
+            for (int i : order) {
+                if (i < parts.length && !parts[i].isBlank())
+                    name.append(name.length() == 0 ? "" : " ").append(unescape(parts[i]).trim());
+            }
+            return name.toString();
+        }
+
+        private static String unescape(String value) {
+            if (value.indexOf('\\') < 0)
+                return value;
+
+            StringBuilder result = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '\\' && i + 1 < value.length()) {
+                    char next = value.charAt(++i);
+                    result.append(next == 'n' || next == 'N' ? '\n' : next);
+                } else {
+                    result.append(ch);
+                }
+            }
+            return result.toString();
+        }
+
+        private String decodeQuotedPrintable(String value) throws IOException {
+            // A soft line break continues the value on the next line.
+            while (value.endsWith("=") && lookahead != null) {
+                value = value.substring(0, value.length() - 1) + readLine();
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '=' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                    bytes.write(Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                    i += 2;
+                } else {
+                    // Quoted-printable text is plain ASCII apart from the escapes.
+                    bytes.write(ch);
+                }
+            }
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        private static boolean isHex(char ch) {
+            return Character.digit(ch, 16) >= 0;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package housy.contact;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+final class ContactJournal {
+
+    static final int ADD = 1;
+    static final int UPDATE = 2;
+    static final int DELETE = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Metrics.Histogram APPEND = Metrics.histogram("journal.append.nanos");
+    private static final Metrics.Histogram APPEND_BYTES = Metrics.histogram("journal.append.bytes");
+
+    static final class Entry {
+
+        private final int op;
+        private final String name;
+        private final Contact contact;
+
+        private Entry(int op, String name, Contact contact) {
+            this.op = op;
+            this.name = name;
+            this.contact = contact;
+        }
+
+        static Entry add(Contact contact) {
+            return new Entry(ADD, contact.getName(), contact);
+        }
+
+        static Entry update(String oldName, Contact contact) {
+            return new Entry(UPDATE, oldName, contact);
+        }
+
+        static Entry delete(Contact contact) {
+            return new Entry(DELETE, contact.getName(), null);
+        }
+    }
+
+    /*
+     * The state the journal describes on top of a snapshot. Every name the
+     * journal touched hides the snapshot record of that name, the contacts
+     * that survive the journal are kept in live.
+     */
+    static final class Replay {
+
+        private final Set<TextKey> hidden = new HashSet<>();
+        private final Map<TextKey, Contact> live = new LinkedHashMap<>();
+
+        private void apply(String name, Contact contact) {
+            TextKey key = key(name);
+            hidden.add(key);
+            live.remove(key);
+            if (contact != null) {
+                hidden.add(key(contact.getName()));
+                live.put(key(contact.getName()), contact);
+            }
+        }
+
+        boolean hides(Contact c) {
+            return hidden.contains(key(c.getName()));
+        }
+
+        Collection<Contact> contacts() {
+            return live.values();
+        }
+    }
+
+    private final Path path;
+    private final Path rotated;
+    private FileChannel channel;
+
+    ContactJournal(Path path) {
+        this.path = path;
+        this.rotated = path.resolveSibling(path.getFileName() + ".old");
+    }
+
+    private static TextKey key(String name) {
+        return NameIndex.key(name);
+    }
+
+    Replay replay() throws IOException {
+        Replay replay = new Replay();
+        long valid = replay(rotated, replay);
+        if (Files.exists(rotated)) {
+            try (FileChannel old = FileChannel.open(rotated, StandardOpenOption.WRITE)) {
+                old.truncate(valid);
+            }
+        }
+        open(replay(path, replay));
+        return replay;
+    }
+
+    private long replay(Path file, Replay replay) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+
+        long size = Files.size(file);
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // Everything from the first torn or corrupt record on is dropped.
+            while (true) {
+                int op = in.readUnsignedByte();
+                int len = ContactCodec.readVarInt(in);
+                // A corrupt length is caught before it is allocated.
+                if (len < 0 || len > size - valid - 1 - varIntSize(len) - 4)
+                    break;
+                byte[] payload = new byte[len];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(op);
+                crc.update(payload);
+                if (in.readInt() != (int) crc.getValue())
+                    break;
+
+                int[] pos = {0};
+                String name = ContactCodec.readField(payload, pos, payload.length);
+                Contact contact = op == DELETE ? null : ContactCodec.decode(payload, pos[0], payload.length - pos[0]);
+                replay.apply(name, contact);
+                valid += 1 + varIntSize(len) + len + 4;
+            }
+        } catch (EOFException e) {
+            // End of the journal.
+        }
+        return valid;
+    }
+
+    private static int varIntSize(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void open(long valid) throws IOException {
+        close();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+    }
+
+    void append(Entry entry) throws IOException {
+        append(List.of(entry));
+    }
+
+    /*
+     * Writes the entries with a single force, so a burst of edits costs one
+     * sync instead of one per edit. Large batches are written in chunks.
+     */
+    void append(List<Entry> entries) throws IOException {
+        long start = System.nanoTime();
+        if (channel == null)
+            open(Files.exists(path) ? Files.size(path) : 0);
+
+        long begin = channel.position();
+        ByteArrayOutputStream records = new ByteArrayOutputStream(Math.min(entries.size() * 64, BUFFER_SIZE * 2));
+        DataOutputStream out = new DataOutputStream(records);
+        CRC32 crc = new CRC32();
+        for (Entry entry : entries) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            ContactCodec.writeField(payload, entry.name);
+            if (entry.contact != null)
+                payload.write(ContactCodec.encode(entry.contact));
+            byte[] body = payload.toByteArray();
+
+            crc.reset();
+            crc.update(entry.op);
+            crc.update(body);
+
+            out.writeByte(entry.op);
+            ContactCodec.writeVarInt(out, body.length);
+            out.write(body);
+            out.writeInt((int) crc.getValue());
+            if (records.size() >= BUFFER_SIZE)
+                write(records);
+        }
+        write(records);
+        channel.force(false);
+        APPEND_BYTES.record(channel.position() - begin);
+        APPEND.recordSince(start);
+    }
+
+    private void write(ByteArrayOutputStream records) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(records.toByteArray());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        records.reset();
+    }
+
+    long size() throws IOException {
+        return channel == null ? 0 : channel.size();
+    }
+
+    boolean isRotated() {
+        return Files.exists(rotated);
+    }
+
+    /*
+     * Moves the current journal aside so a snapshot can be written while new
+     * entries keep going to a fresh journal. A journal left behind by an
+     * unfinished compaction is extended rather than replaced.
+     */
+    void rotate() throws IOException {
+        close();
+        if (Files.exists(rotated) && Files.exists(path)) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(rotated, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long pos = 0;
+                while (pos < in.size()) {
+                    pos += in.transferTo(pos, in.size() - pos, out);
+                }
+                out.force(false);
+            }
+            Files.delete(path);
+        } else if (Files.exists(path)) {
+            Files.move(path, rotated, StandardCopyOption.ATOMIC_MOVE);
+        }
+        open(0);
+    }
+
+    void dropRotated() throws IOException {
+        Files.deleteIfExists(rotated);
+    }
+
+    void reset() throws IOException {
+        dropRotated();
+        open(0);
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package housy.contact;
+
+import java.util.*;
+import javax.swing.AbstractListModel;
+
+/*
+ * The names shown in the contact list, in the order of NameIndex.ORDER.
+ * Changes are applied in place and only the affected rows are reported to
+ * the list. The key of every name is kept next to it, so finding a row
+ * only computes the key of the name looked for.
+ */
+public final class ContactListModel extends AbstractListModel<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<String> names = new ArrayList<>();
+    // Null while a preview is shown.
+    private List<TextKey> keys = new ArrayList<>();
+
+    @Override
+    public int getSize() {
+        return names.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return names.get(index);
+    }
+
+    private int search(String name, TextKey key) {
+        if (keys == null)
+            return Collections.binarySearch(names, name, NameIndex.ORDER);
+        return Collections.binarySearch(keys, key);
+    }
+
+    private int search(String name) {
+        return search(name, NameIndex.key(name));
+    }
+
+    public int indexOf(String name) {
+        int i = search(name);
+        return i < 0 ? -1 : i;
+    }
+
+    /*
+     * Shows the names of the index in their order, along with the keys it
+     * already holds for them.
+     */
+    public void setNames(NameIndex index) {
+        List<TextKey> sortedKeys = new ArrayList<>(index.size());
+        show(index.names(sortedKeys), sortedKeys);
+    }
+
+    /*
+     * Shows names that are already sorted without copying them, until the
+     * next call to setNames. Nothing may be added, removed or renamed in
+     * between.
+     */
+    public void preview(List<String> sorted) {
+        show(sorted, null);
+    }
+
+    private void show(List<String> sorted, List<TextKey> sortedKeys) {
+        int removed = names.size();
+        if (removed > 0) {
+            names = new ArrayList<>();
+            keys = new ArrayList<>();
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+
+        names = sorted;
+        keys = sortedKeys;
+        if (!names.isEmpty())
+            fireIntervalAdded(this, 0, names.size() - 1);
+    }
+
+    public void add(String name) {
+        TextKey key = NameIndex.key(name);
+        int i = search(name, key);
+        if (i < 0)
+            i = -i - 1;
+        names.add(i, name);
+        if (keys != null)
+            keys.add(i, key);
+        fireIntervalAdded(this, i, i);
+    }
+
+    public void remove(String name) {
+        int i = search(name);
+        if (i < 0)
+            return;
+        names.remove(i);
+        if (keys != null)
+            keys.remove(i);
+        fireIntervalRemoved(this, i, i);
+    }
+
+    public void rename(String oldName, String newName) {
+        int from = search(oldName);
+        if (from < 0) {
+            add(newName);
+            return;
+        }
+
+        TextKey key = NameIndex.key(newName);
+        int to = search(newName, key);
+        if (to < 0)
+            to = -to - 1;
+        // The new name keeps the row when no other name sorts in between.
+        if (to == from || to == from + 1) {
+            names.set(from, newName);
+            if (keys != null)
+                keys.set(from, key);
+            fireContentsChanged(this, from, from);
+            return;
+        }
+
+        remove(oldName);
+        add(newName);
+    }
+}
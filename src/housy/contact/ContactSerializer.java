@@ -3,15 +3,70 @@ package housy.contact;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class ContactSerializer {
     
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final long JOURNAL_LIMIT = 1 << 20;
+    public static final long MAPPED_THRESHOLD = 32L << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long CLOSE_TIMEOUT = 60;
+
+    private static final Metrics.Histogram SAVE = Metrics.histogram("save.nanos");
+    private static final Metrics.Histogram SAVE_BYTES = Metrics.histogram("save.bytes");
+    private static final Metrics.Histogram LOAD = Metrics.histogram("load.nanos");
+    private static final Metrics.Counter COMPACTIONS = Metrics.counter("compactions");
+
     private File file;
-    private String userhome;
+    private final Path indexFile;
+    private final ContactJournal journal;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private long mappedThreshold = MAPPED_THRESHOLD;
+    private volatile SearchIndex index;
+
+    /*
+     * What a load read: the contacts of the snapshot by position, null where
+     * the journal replaced them, the contacts of the journal, and the
+     * length and checksum naming the snapshot.
+     */
+    private static final class Loaded {
+
+        private Contact[] snapshot = new Contact[0];
+        private List<Contact> journal = new ArrayList<>();
+        private long length;
+        private int checksum;
+
+        private List<Contact> all() {
+            List<Contact> all = new ArrayList<>(snapshot.length + journal.size());
+            for (Contact c : snapshot) {
+                if (c != null)
+                    all.add(c);
+            }
+            all.addAll(journal);
+            return all;
+        }
+    }
     
-    private String findUserHome() {
+    private static String findUserHome() {
         String os = System.getProperty("os.name").toLowerCase();
         
         if (os.contains("win")) {
@@ -24,24 +79,298 @@ public class ContactSerializer {
     }
     
     public ContactSerializer(String fileName) throws IOException {
-        userhome = findUserHome();
-        Path homePath = Path.of(userhome, "ContactData");
+        this(Path.of(findUserHome(), "ContactData"));
+    }
+
+    public ContactSerializer(Path homePath) throws IOException {
         if (!Files.exists(homePath)) {
             Files.createDirectories(homePath);
         }
         file = Path.of(homePath.toString(), "contacts.cs").toFile();
-        
+        indexFile = Path.of(homePath.toString(), "contacts.idx");
+        journal = new ContactJournal(Path.of(homePath.toString(), "contacts.journal"));
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "contact-compactor");
+            t.setDaemon(true);
+            return t;
+        });
     }
     
+    /*
+     * Snapshots of at least this many bytes are memory-mapped and handed out
+     * as lazily decoded views instead of being read onto the heap.
+     */
+    public void setMappedThreshold(long mappedThreshold) {
+        this.mappedThreshold = mappedThreshold;
+    }
+
+    /*
+     * Runs on the compactor behind the work already queued there, so an
+     * index still being saved for the loaded snapshot cannot race with or
+     * replace the one written here. Returns once the snapshot is written.
+     */
     public void save(List<Contact> contacts) throws IOException {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-            out.writeObject(contacts);
+        Future<?> saved = compactor.submit(() -> {
+            writeSnapshot(contacts);
+            journal.reset();
+            return null;
+        });
+        try {
+            saved.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving the contacts.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    void append(List<ContactJournal.Entry> entries) throws IOException {
+        journal.append(entries);
+    }
+
+    public boolean needsCompaction() throws IOException {
+        return !compacting.get() && (journal.size() >= JOURNAL_LIMIT || journal.isRotated());
+    }
+
+    /*
+     * Rotates the journal and writes the given contacts as the new snapshot
+     * in the background. The rotated journal is only dropped after the
+     * snapshot is in place. Must be called from the thread that appends.
+     */
+    public void compact(List<Contact> snapshot) throws IOException {
+        if (!compacting.compareAndSet(false, true))
+            return;
+
+        try {
+            journal.rotate();
+        } catch (IOException e) {
+            compacting.set(false);
+            throw e;
+        }
+        COMPACTIONS.increment();
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(snapshot);
+                journal.dropRotated();
+            } catch (IOException e) {
+                Logger.getLogger(ContactSerializer.class.getName()).log(Level.SEVERE, "Failed to compact the contact journal.", e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /*
+     * Waits for a compaction or an index save running in the background to
+     * finish, so a short-lived process does not exit halfway through one.
+     */
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The contacts are written in the order of the contact list, followed by
+     * the offset of every record. Names are read once up front since they
+     * may be edited while the snapshot is written, and the records are
+     * written with the names they were sorted by, so the file stays in
+     * order. A rename made meanwhile is in the journal that follows.
+     */
+    private void writeSnapshot(List<Contact> contacts) throws IOException {
+        long start = System.nanoTime();
+        String[] names = contacts.stream().map(Contact::getName).toArray(String[]::new);
+        TextKey[] keys = Arrays.stream(names).map(NameIndex::key).toArray(TextKey[]::new);
+        int[] order = IntStream.range(0, names.length).boxed()
+                .sorted(Comparator.<Integer, TextKey>comparing(i -> keys[i]).thenComparing(i -> names[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        List<Contact> sorted = Arrays.stream(order).mapToObj(contacts::get).toList();
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(temp.toFile()), crc), BUFFER_SIZE))) {
+            ContactCodec.writeHeader(out, sorted.size());
+            int[] offsets = new int[sorted.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                // Saturates past 2 GiB, where the file can no longer be mapped anyway.
+                offsets[i] = out.size();
+                ContactCodec.writeRecord(out, sorted.get(i), names[order[i]]);
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+        }
+        long length = Files.size(temp);
+        SAVE_BYTES.record(length);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeIndex(index, sorted, length, (int) crc.getValue());
+        SAVE.recordSince(start);
+    }
+
+    /*
+     * The index is saved after the snapshot it belongs to, so a crash in
+     * between leaves a stale index that is rebuilt on the next load.
+     */
+    private void writeIndex(SearchIndex index, List<Contact> contacts, long length, int checksum) {
+        if (index == null)
+            return;
+        try {
+            IndexSnapshot.write(indexFile, index, contacts, length, checksum);
+        } catch (IOException e) {
+            Logger.getLogger(ContactSerializer.class.getName()).log(Level.SEVERE, "Failed to save the search index.", e);
         }
     }
 
     public List<Contact> loadContacts() throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))){
-            return (ArrayList<Contact>) in.readObject();
+        List<Contact> contacts = new ArrayList<>();
+        loadContacts(DEFAULT_BATCH_SIZE, contacts::addAll);
+        return contacts;
+    }
+
+    public void loadContacts(int batchSize, Consumer<List<Contact>> consumer) throws IOException, ClassNotFoundException {
+        loadContacts(batchSize, consumer, null);
+    }
+
+    /*
+     * Also fills the given empty index with the loaded contacts, from the
+     * saved index when it belongs to the snapshot and by building it
+     * otherwise. From then on the index is saved with every snapshot.
+     */
+    public void loadContacts(int batchSize, Consumer<List<Contact>> consumer, SearchIndex index) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        Loaded loaded = new Loaded();
+        try {
+            load(batchSize, consumer, loaded);
+        } finally {
+            LOAD.recordSince(start);
+        }
+        if (index != null) {
+            loadIndex(index, loaded);
+            this.index = index;
+        }
+    }
+
+    private void load(int batchSize, Consumer<List<Contact>> consumer, Loaded loaded) throws IOException, ClassNotFoundException {
+        if (file.exists() && isLegacyFile())
+            migrate();
+
+        ContactJournal.Replay replay = journal.replay();
+        List<Contact> batch = new ArrayList<>(batchSize);
+        if (file.exists() && file.length() >= mappedThreshold) {
+            MappedContactStore store = MappedContactStore.open(file.toPath());
+            loaded.snapshot = new Contact[store.size()];
+            for (int i = 0; i < store.size(); i++) {
+                Contact c = store.get(i);
+                if (!replay.hides(c)) {
+                    loaded.snapshot[i] = c;
+                    batch = offer(batch, c, batchSize, consumer);
+                }
+            }
+            loaded.length = file.length();
+            loaded.checksum = store.checksum();
+        } else if (file.exists()) {
+            CRC32 crc = new CRC32();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new CheckedInputStream(new FileInputStream(file), crc), BUFFER_SIZE))) {
+                int count = ContactCodec.readHeader(in);
+                loaded.snapshot = new Contact[count];
+                for (int i = 0; i < count; i++) {
+                    Contact c = ContactCodec.readRecord(in);
+                    if (!replay.hides(c)) {
+                        loaded.snapshot[i] = c;
+                        batch = offer(batch, c, batchSize, consumer);
+                    }
+                }
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            loaded.length = file.length();
+            loaded.checksum = (int) crc.getValue();
+        }
+        for (Contact c : replay.contacts()) {
+            loaded.journal.add(c);
+            batch = offer(batch, c, batchSize, consumer);
+        }
+        if (!batch.isEmpty())
+            consumer.accept(batch);
+    }
+
+    /*
+     * A saved index that cannot be used is built again, and saved in the
+     * background for the next load.
+     */
+    private void loadIndex(SearchIndex index, Loaded loaded) {
+        try {
+            if (loaded.length > 0 && Files.exists(indexFile) && IndexSnapshot.read(indexFile, index, loaded.snapshot, loaded.length, loaded.checksum)) {
+                index.addAll(loaded.journal);
+                return;
+            }
+        } catch (IOException e) {
+            Logger.getLogger(ContactSerializer.class.getName()).log(Level.WARNING, "Failed to load the search index, building it instead.", e);
+        }
+
+        index.addAll(loaded.all());
+        if (loaded.length > 0)
+            compactor.execute(() -> writeIndex(index, Arrays.asList(loaded.snapshot), loaded.length, loaded.checksum));
+    }
+
+    private static List<Contact> offer(List<Contact> batch, Contact c, int batchSize, Consumer<List<Contact>> consumer) {
+        batch.add(c);
+        if (batch.size() < batchSize)
+            return batch;
+        consumer.accept(batch);
+        return new ArrayList<>(batchSize);
+    }
+
+    /*
+     * The snapshot as it is on disk, to show its names while the contacts
+     * are still loading. Only the header is read, the records are decoded
+     * when they are asked for, and the journal is not applied. Only
+     * snapshots the load maps anyway are previewed: a mapped file cannot be
+     * replaced on Windows, and smaller books load quickly enough without.
+     * Null when the snapshot cannot be opened this way; the load reports why.
+     */
+    MappedContactStore preview() {
+        try {
+            if (!file.exists() || file.length() < mappedThreshold || file.length() > Integer.MAX_VALUE
+                    || snapshotVersion() != ContactCodec.VERSION)
+                return null;
+            return MappedContactStore.open(file.toPath());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private int snapshotVersion() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == ContactCodec.MAGIC ? in.readUnsignedByte() : -1;
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    private boolean isLegacyFile() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == ContactCodec.LEGACY_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void migrate() throws IOException, ClassNotFoundException {
+        List<Contact> contacts;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            contacts = (List<Contact>) in.readObject();
         }
+        Files.copy(file.toPath(), file.toPath().resolveSibling(file.getName() + ".old"), StandardCopyOption.REPLACE_EXISTING);
+        save(contacts);
     }
 }
@@ -0,0 +1,176 @@
+package housy.contact;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/*
+ * The contacts of the book, keyed by their id. The contacts sit in a dense
+ * array for iteration and snapshots, and an open addressing table of ids
+ * maps each contact to its position, so adding, looking up and removing a
+ * contact take constant time. Removing moves the last contact into the
+ * freed position, so the order is not the order of insertion.
+ */
+public final class ContactStore implements Iterable<Contact> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long FREE = 0;
+
+    private Contact[] contacts;
+    private int size;
+    private long[] ids;
+    private int[] positions;
+
+    public ContactStore() {
+        contacts = new Contact[MIN_CAPACITY];
+        ids = new long[MIN_CAPACITY * 2];
+        positions = new int[MIN_CAPACITY * 2];
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while (ids[slot] != FREE) {
+            if (ids[slot] == id)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long id, int position) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+        while (ids[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        positions[slot] = position;
+    }
+
+    /*
+     * Frees a slot and moves later entries of the same probe run back into
+     * the gap, so lookups never stop early at a hole.
+     */
+    private void delete(int slot) {
+        int mask = ids.length - 1;
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long id = ids[i];
+            if (id == FREE)
+                break;
+            int home = hash(id) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                ids[gap] = id;
+                positions[gap] = positions[i];
+                gap = i;
+            }
+        }
+        ids[gap] = FREE;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > contacts.length)
+            contacts = Arrays.copyOf(contacts, Math.max(capacity, contacts.length * 2));
+        if (capacity * 2 <= ids.length)
+            return;
+
+        // Keeps the table at most half full.
+        long[] oldIds = ids;
+        int[] oldPositions = positions;
+        int length = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        ids = new long[length];
+        positions = new int[length];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != FREE)
+                insert(oldIds[i], oldPositions[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Contact get(long id) {
+        int slot = find(id);
+        return slot < 0 ? null : contacts[positions[slot]];
+    }
+
+    public boolean contains(Contact c) {
+        return find(c.getId()) >= 0;
+    }
+
+    public boolean add(Contact c) {
+        if (contains(c))
+            return false;
+        ensureCapacity(size + 1);
+        contacts[size] = c;
+        insert(c.getId(), size);
+        size++;
+        return true;
+    }
+
+    public void addAll(Collection<Contact> all) {
+        ensureCapacity(size + all.size());
+        for (Contact c : all) {
+            add(c);
+        }
+    }
+
+    public boolean remove(Contact c) {
+        int slot = find(c.getId());
+        if (slot < 0)
+            return false;
+
+        int position = positions[slot];
+        delete(slot);
+        int last = --size;
+        if (position != last) {
+            Contact moved = contacts[last];
+            contacts[position] = moved;
+            positions[find(moved.getId())] = position;
+        }
+        contacts[last] = null;
+        return true;
+    }
+
+    /*
+     * A copy of the contacts that does not change with the store.
+     */
+    public List<Contact> toList() {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(contacts, size)));
+    }
+
+    public Stream<Contact> stream() {
+        return Arrays.stream(contacts, 0, size);
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Contact next() {
+                if (next >= size)
+                    throw new NoSuchElementException();
+                return contacts[next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package housy.contact;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * The search index of a contact snapshot, saved next to it so startup can
+ * load the index instead of building it. The postings refer to contacts by
+ * their position in the snapshot, and the header names the snapshot by its
+ * length and checksum: an index saved for any other snapshot is stale and
+ * is ignored. A checksum over the whole file catches torn writes.
+ *
+ * Layout: magic, version, snapshot length, snapshot checksum, contact
+ * count, the postings written by SearchIndex.write and the checksum of
+ * everything before it.
+ */
+final class IndexSnapshot {
+
+    static final int MAGIC = 0x43544958;
+    /*
+     * Changes whenever the grams of a contact change, so indexes saved by
+     * an older version are built again.
+     */
+    static final int VERSION = 4;
+
+    private static final int HEADER_SIZE = 21;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private IndexSnapshot() {
+    }
+
+    /*
+     * Writes the index for the contacts of a snapshot, in the order the
+     * snapshot holds them. Contacts that are null are left out.
+     */
+    static void write(Path file, SearchIndex index, List<Contact> contacts, long snapshotLength, int snapshotChecksum) throws IOException {
+        Map<Contact, Integer> positions = new IdentityHashMap<>(contacts.size());
+        for (int i = 0; i < contacts.size(); i++) {
+            if (contacts.get(i) != null)
+                positions.put(contacts.get(i), i);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile()), BUFFER_SIZE), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(snapshotLength);
+            out.writeInt(snapshotChecksum);
+            out.writeInt(contacts.size());
+            index.write(out, positions);
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Loads the index saved for the given snapshot into an empty index.
+     * Returns false when the file belongs to another snapshot.
+     */
+    static boolean read(Path file, SearchIndex index, Contact[] contacts, long snapshotLength, int snapshotChecksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("The index file is too large to be mapped.");
+            if (size < HEADER_SIZE + 4)
+                throw new IOException("Not an index file.");
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("Not an index file.");
+            if ((buffer.get(4) & 0xFF) != VERSION || buffer.getLong(5) != snapshotLength
+                    || buffer.getInt(13) != snapshotChecksum || buffer.getInt(17) != contacts.length)
+                return false;
+
+            int end = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end))
+                throw new IOException("Corrupt index file.");
+
+            index.restore(buffer.position(HEADER_SIZE).limit(end), contacts);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package housy.contact;
+
+/*
+ * The normalized field values a contact is indexed under. Every posting of
+ * the contact points to the same instance, so an edit reaches all of them
+ * with one volatile write and only the grams the edit added or removed
+ * need new postings. The arrays themselves are never changed, a reader
+ * that took one sees either the old or the new values, never a mix.
+ */
+final class IndexedValues {
+
+    private volatile String[] values;
+
+    IndexedValues(String[] values) {
+        this.values = values;
+    }
+
+    String[] get() {
+        return values;
+    }
+
+    void set(String[] values) {
+        this.values = values;
+    }
+}
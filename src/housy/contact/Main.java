@@ -9,6 +9,12 @@ import javax.swing.UnsupportedLookAndFeelException;
 
 public class Main {
 
+    /*
+     * Set to a number of seconds to have the metrics written to the log that
+     * often.
+     */
+    private static final String METRICS_LOG_PROPERTY = "housy.contact.metrics.log";
+
     private static void initLaf() {
         try {
             UIManager.setLookAndFeel(new FlatLightLaf());
@@ -17,7 +23,21 @@ public class Main {
         }
     }
     
+    private static void initMetrics() {
+        Long period = Long.getLong(METRICS_LOG_PROPERTY);
+        if (period != null && period > 0)
+            Metrics.logEvery(period);
+    }
+
+    /*
+     * With arguments the contacts are handled on the command line and no
+     * window, look and feel or AWT is ever loaded.
+     */
     public static void main(String[] args) {
+        initMetrics();
+        if (args.length > 0)
+            System.exit(Cli.run(args));
+
         initLaf();
         EventQueue.invokeLater(() -> {
             MainGUI mg = new MainGUI();
@@ -1,23 +1,40 @@
 package housy.contact;
 
+import java.awt.Cursor;
 import java.awt.Image;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import javax.imageio.ImageIO;
-import javax.swing.DefaultListModel;
+import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 public final class MainGUI extends javax.swing.JFrame {
 
     public static final String DEFAULT_TITLE = "Contacts";
 
+    private static final Metrics.Histogram LOAD = Metrics.histogram("ui.load.nanos");
+    private static final Metrics.Histogram REFRESH = Metrics.histogram("ui.refresh.nanos");
+
     private final SearchIndex index;
+    private final NameIndex nameIndex;
+    private final ContactListModel listModel;
     private ContactSerializer serializer;
+    private PersistenceQueue persistence;
     private Contact currentContact;
-    private List<Contact> contacts;
+    private MappedContactStore preview;
+    private final ContactStore contacts;
+    private String busy;
 
     private void initIconImage() {
         try {
@@ -29,12 +46,185 @@ public final class MainGUI extends javax.swing.JFrame {
     }
 
     private void loadContacts() {
-        try {
-            contacts = serializer.loadContacts();
-            index.addAll(contacts);
-        } catch (IOException | ClassNotFoundException e) {
-            contacts = new ArrayList<>();
-        }
+        busy = "Please wait until the contacts have been loaded.";
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setTitleMessage("Loading...");
+        long start = System.nanoTime();
+
+        // The names of the snapshot are shown right away, the contacts follow.
+        preview = serializer.preview();
+        if (preview != null)
+            listModel.preview(preview.names());
+
+        new SwingWorker<Void, List<Contact>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            protected Void doInBackground() throws Exception {
+                List<Contact> loaded = new ArrayList<>();
+                try {
+                    serializer.loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+                        loaded.addAll(batch);
+                        publish(batch);
+                    }, index);
+                } catch (Exception e) {
+                    // Whatever was read before the failure can still be searched.
+                    index.addAll(loaded);
+                    throw e;
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(List<List<Contact>> batches) {
+                for (List<Contact> batch : batches) {
+                    contacts.addAll(batch);
+                    nameIndex.addAll(batch);
+                }
+                setTitleMessage("Loading... " + contacts.size() + " contacts");
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // Keep whatever was read before the failure.
+                    JOptionPane.showMessageDialog(MainGUI.this, "Failed to load all the contacts!");
+                }
+                preview = null;
+                updateList();
+                // A contact picked from the preview is replaced by the loaded one.
+                Contact picked = currentContact;
+                Contact loaded = picked == null ? null : nameIndex.get(picked.getName());
+                if (picked != null && loaded != picked) {
+                    clear();
+                    if (loaded != null)
+                        loadContact(loaded);
+                }
+                idle();
+                LOAD.recordSince(start);
+            }
+        }.execute();
+    }
+
+    /*
+     * Contacts are read in the background and checked against the names
+     * that are already taken. While that happens nothing may change the
+     * contacts and nothing may be searched, so the name and search indexes
+     * can be filled off the UI thread. The imported contacts are added to
+     * the list in one go at the end.
+     */
+    private void importContacts(Path path) {
+        busy = "Please wait until the import has finished.";
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setTitleMessage("Importing...");
+
+        new SwingWorker<List<Contact>, Integer>() {
+            private int skipped;
+
+            @Override
+            protected List<Contact> doInBackground() throws Exception {
+                Set<TextKey> seen = new HashSet<>();
+                List<Contact> imported = new ArrayList<>();
+                ContactImporter.read(path, ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+                    for (Contact c : batch) {
+                        if (nameIndex.contains(c.getName()) || !seen.add(NameIndex.key(c.getName())))
+                            skipped++;
+                        else
+                            imported.add(c);
+                    }
+                    publish(imported.size());
+                });
+                nameIndex.addAll(imported);
+                index.addAll(imported);
+                return imported;
+            }
+
+            @Override
+            protected void process(List<Integer> counts) {
+                setTitleMessage("Importing... " + counts.get(counts.size() - 1) + " contacts");
+            }
+
+            @Override
+            protected void done() {
+                List<Contact> imported;
+                try {
+                    imported = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    idle();
+                    JOptionPane.showMessageDialog(MainGUI.this, "Failed to import the contacts!");
+                    return;
+                }
+
+                contacts.addAll(imported);
+                updateList();
+                idle();
+                if (!imported.isEmpty())
+                    save(imported.stream().map(ContactJournal.Entry::add).toList());
+                JOptionPane.showMessageDialog(MainGUI.this, "Imported " + imported.size() + " contacts."
+                        + (skipped == 0 ? "" : "\n" + skipped + " contacts were skipped because their name is already used."));
+            }
+        }.execute();
+    }
+
+    /*
+     * The contacts are written straight from the store on a worker thread.
+     * Nothing may change them until the export is done.
+     */
+    private void exportContacts(Path path) {
+        busy = "Please wait until the export has finished.";
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setTitleMessage("Exporting...");
+        int total = contacts.size();
+
+        new SwingWorker<Void, Integer>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                ContactExporter.write(path, contacts, this::publish);
+                return null;
+            }
+
+            @Override
+            protected void process(List<Integer> counts) {
+                setTitleMessage("Exporting... " + counts.get(counts.size() - 1) + " of " + total + " contacts");
+            }
+
+            @Override
+            protected void done() {
+                idle();
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(MainGUI.this, "Exported " + total + " contacts.");
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(MainGUI.this, "Failed to export the contacts!");
+                }
+            }
+        }.execute();
+    }
+
+    private void idle() {
+        busy = null;
+        setCursor(Cursor.getDefaultCursor());
+        if (currentContact == null)
+            setTitle(DEFAULT_TITLE);
+        else
+            setTitleMessage(currentContact.getName());
+    }
+
+    private boolean isBusy() {
+        if (busy != null)
+            JOptionPane.showMessageDialog(this, busy);
+        return busy != null;
+    }
+
+    private void initPersistence() {
+        persistence = new PersistenceQueue(serializer, SwingUtilities::invokeLater, contacts::toList);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                persistence.close();
+            }
+        });
     }
 
     private void initContactSerializer() {
@@ -50,23 +240,32 @@ public final class MainGUI extends javax.swing.JFrame {
         initComponents();
         initIconImage();
         lock();
-
-        contacts = new ArrayList<>();
+        listModel = new ContactListModel();
+        contactList.setModel(listModel);
+        // With a fixed row height the list never measures every name.
+        contactList.setFixedCellHeight(contactList.getCellRenderer()
+                .getListCellRendererComponent(contactList, DEFAULT_TITLE, 0, false, false).getPreferredSize().height);
+
+        contacts = new ContactStore();
+        Metrics.gauge("contacts", contacts::size);
         initContactSerializer();
         index = new SearchIndex();
+        Metrics.gauge("index.contacts", index::size);
+        Metrics.gauge("index.grams", index::gramCount);
+        Metrics.gauge("index.words", index::wordCount);
+        nameIndex = new NameIndex();
+        initPersistence();
         loadContacts();
-        updateList();
     }
 
     private void updateList() {
-        DefaultListModel<String> dlm = new DefaultListModel<>();
-        List<String> names = contacts.stream().map(Contact::getName).sorted().toList();
-        dlm.addAll(names);
-        contactList.setModel(dlm);
+        long start = System.nanoTime();
+        listModel.setNames(nameIndex);
+        REFRESH.recordSince(start);
     }
 
     private boolean isUsedName(String name) {
-        return contacts.stream().map(Contact::getName).filter(x -> x.equalsIgnoreCase(name)).count() > 0;
+        return nameIndex.contains(name);
     }
 
     private String getDisplayedName() {
@@ -110,22 +309,27 @@ public final class MainGUI extends javax.swing.JFrame {
         Contact c = new Contact(name, phone, email);
         c.setNotes(notes);
         contacts.add(c);
+        nameIndex.add(c);
         index.addContact(c);
-        updateList();
+        listModel.add(name);
         clear();
         lock();
-        save();
+        save(ContactJournal.Entry.add(c));
     }
 
-    public void save() {
-        try {
-            serializer.save(contacts);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Failed to save the contacts!");
-        }
+    private void save(ContactJournal.Entry entry) {
+        save(List.of(entry));
+    }
+
+    private void save(List<ContactJournal.Entry> entries) {
+        persistence.submit(entries).exceptionally(e -> {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Failed to save the contacts!"));
+            return null;
+        });
     }
 
     public void saveEdit() {
+        String oldName = currentContact.getName();
         String name = getDisplayedName();
         String phone = getDisplayedPhone();
         String email = getDisplayedEmail();
@@ -136,21 +340,23 @@ public final class MainGUI extends javax.swing.JFrame {
             return;
         }
 
-        if (!name.equalsIgnoreCase(currentContact.getName())) {
+        if (!NameIndex.sameName(name, currentContact.getName())) {
             if (isUsedName(name)) {
                 JOptionPane.showMessageDialog(this, "This name has already been used!\nPlease provide a different name.");
                 return;
             }
 
             currentContact.setName(name);
+            nameIndex.rename(currentContact, oldName);
+            listModel.rename(oldName, name);
         }
 
         currentContact.setPhone(phone);
         currentContact.setEmail(email);
         currentContact.setNotes(notes);
-        updateList();
+        index.update(currentContact);
         lock();
-        save();
+        save(ContactJournal.Entry.update(oldName, currentContact));
     }
 
     public void loadContact(Contact contact) {
@@ -219,6 +425,10 @@ public final class MainGUI extends javax.swing.JFrame {
         jButton4 = new javax.swing.JButton();
         jButton2 = new javax.swing.JButton();
         jButton5 = new javax.swing.JButton();
+        jMenuBar1 = new javax.swing.JMenuBar();
+        jMenu1 = new javax.swing.JMenu();
+        jMenuItem1 = new javax.swing.JMenuItem();
+        jMenuItem2 = new javax.swing.JMenuItem();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle(DEFAULT_TITLE);
@@ -355,6 +565,28 @@ public final class MainGUI extends javax.swing.JFrame {
                 .addContainerGap(58, Short.MAX_VALUE))
         );
 
+        jMenu1.setText("File");
+
+        jMenuItem1.setText("Import...");
+        jMenuItem1.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jMenuItem1ActionPerformed(evt);
+            }
+        });
+        jMenu1.add(jMenuItem1);
+
+        jMenuItem2.setText("Export...");
+        jMenuItem2.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jMenuItem2ActionPerformed(evt);
+            }
+        });
+        jMenu1.add(jMenuItem2);
+
+        jMenuBar1.add(jMenu1);
+
+        setJMenuBar(jMenuBar1);
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -397,7 +629,7 @@ public final class MainGUI extends javax.swing.JFrame {
     }//GEN-LAST:event_jButton2MouseClicked
 
     private void jButton5MouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_jButton5MouseClicked
-        if (!isLeft(evt))
+        if (!isLeft(evt) || isBusy())
             return;
 
         if (currentContact == null) {
@@ -412,7 +644,11 @@ public final class MainGUI extends javax.swing.JFrame {
         String selection = contactList.getSelectedValue();
         if (selection == null || selection.isBlank())
             return;
-        Contact c = contacts.stream().filter(x -> x.getName().equalsIgnoreCase(selection)).findFirst().get();
+        Contact c = nameIndex.get(selection);
+        if (c == null && preview != null)
+            c = preview.get(contactList.getSelectedIndex());
+        if (c == null)
+            return;
         loadContact(c);
     }//GEN-LAST:event_contactListValueChanged
 
@@ -425,33 +661,63 @@ public final class MainGUI extends javax.swing.JFrame {
     }//GEN-LAST:event_jButton3ActionPerformed
 
     private void jButton4ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton4ActionPerformed
-        if (currentContact == null)
+        if (currentContact == null || isBusy())
             return;
         int opt = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete " + currentContact.getName() + "?");
         if (opt != JOptionPane.YES_OPTION)
             return;
+        ContactJournal.Entry entry = ContactJournal.Entry.delete(currentContact);
         contacts.remove(currentContact);
+        nameIndex.remove(currentContact);
         index.remove(currentContact);
+        listModel.remove(currentContact.getName());
         currentContact = null;
         lock();
         clear();
-        updateList();
-        save();
+        save(entry);
     }//GEN-LAST:event_jButton4ActionPerformed
 
     private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton1ActionPerformed
+        if (isBusy())
+            return;
         SearchDialog dialog = new SearchDialog(this, true, index);
         dialog.setVisible(true);
         String selectedName = dialog.getSelection();
         if (selectedName.isBlank())
             return;
-        Contact c = contacts.stream()
-                .filter(x -> x.getName().equalsIgnoreCase(selectedName))
-                .findFirst()
-                .orElse(new EmptyContact());
-        loadContact(c);
+        Contact c = nameIndex.get(selectedName);
+        loadContact(c == null ? new EmptyContact() : c);
     }//GEN-LAST:event_jButton1ActionPerformed
 
+    private void jMenuItem1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jMenuItem1ActionPerformed
+        if (isBusy())
+            return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV and vCard files", "csv", "vcf", "vcard"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        importContacts(chooser.getSelectedFile().toPath());
+    }//GEN-LAST:event_jMenuItem1ActionPerformed
+
+    private void jMenuItem2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jMenuItem2ActionPerformed
+        if (isBusy())
+            return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("vCard files", "vcf"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("JSON files", "json"));
+        chooser.setAcceptAllFileFilterUsed(false);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        // Files without a known extension get the one of the chosen filter.
+        Path path = chooser.getSelectedFile().toPath();
+        String extension = ((FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+        if (!chooser.getFileFilter().accept(path.toFile()))
+            path = path.resolveSibling(path.getFileName() + "." + extension);
+        exportContacts(path);
+    }//GEN-LAST:event_jMenuItem2ActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JList<String> contactList;
     private javax.swing.JTextField emailField;
@@ -465,6 +731,10 @@ public final class MainGUI extends javax.swing.JFrame {
     private javax.swing.JLabel jLabel2;
     private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
+    private javax.swing.JMenu jMenu1;
+    private javax.swing.JMenuBar jMenuBar1;
+    private javax.swing.JMenuItem jMenuItem1;
+    private javax.swing.JMenuItem jMenuItem2;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel jPanel3;
     private javax.swing.JScrollPane jScrollPane1;
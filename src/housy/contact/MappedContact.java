@@ -0,0 +1,95 @@
+package housy.contact;
+
+/*
+ * A contact backed by a record of a MappedContactStore. The name is cached
+ * once read since the list and the index keep asking for it, the other
+ * fields are decoded on every access. The first edit copies the record onto
+ * the heap and the contact behaves like any other from then on.
+ */
+final class MappedContact extends Contact {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappedContactStore store;
+    private final int offset;
+    private transient String name;
+    /*
+     * Set once the fields are copied, so a thread that sees it set also
+     * sees the copied fields.
+     */
+    private volatile boolean materialized;
+
+    MappedContact(MappedContactStore store, int offset) {
+        this.store = store;
+        this.offset = offset;
+    }
+
+    private void materialize() {
+        if (materialized)
+            return;
+        String name = getName();
+        String phone = getPhone();
+        String email = getEmail();
+        String notes = getNotes();
+        super.setName(name);
+        super.setPhone(phone);
+        super.setEmail(email);
+        super.setNotes(notes);
+        materialized = true;
+        this.name = null;
+    }
+
+    @Override
+    public String getName() {
+        if (materialized)
+            return super.getName();
+        if (name == null)
+            name = store.field(offset, MappedContactStore.NAME);
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        materialize();
+        super.setName(name);
+    }
+
+    @Override
+    public String getPhone() {
+        return materialized ? super.getPhone() : store.field(offset, MappedContactStore.PHONE);
+    }
+
+    @Override
+    public void setPhone(String phone) {
+        materialize();
+        super.setPhone(phone);
+    }
+
+    @Override
+    public String getEmail() {
+        return materialized ? super.getEmail() : store.field(offset, MappedContactStore.EMAIL);
+    }
+
+    @Override
+    public void setEmail(String email) {
+        materialize();
+        super.setEmail(email);
+    }
+
+    @Override
+    public String getNotes() {
+        return materialized ? super.getNotes() : store.field(offset, MappedContactStore.NOTES);
+    }
+
+    @Override
+    public void setNotes(String notes) {
+        materialize();
+        super.setNotes(notes);
+    }
+
+    private Object writeReplace() {
+        Contact c = new Contact(getName(), getPhone(), getEmail());
+        c.setNotes(getNotes());
+        return c;
+    }
+}
@@ -0,0 +1,150 @@
+package housy.contact;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/*
+ * A read-only view of a contact snapshot mapped into memory. The fields are
+ * decoded when they are asked for. The record offsets are read from the
+ * table at the end of the file, only snapshots without one are scanned for
+ * them when opened.
+ */
+final class MappedContactStore {
+
+    static final int NAME = 0;
+    static final int PHONE = 1;
+    static final int EMAIL = 2;
+    static final int NOTES = 3;
+
+    private static final int HEADER_SIZE = 9;
+
+    private final ByteBuffer buffer;
+    private final IntBuffer offsets;
+    private final boolean sorted;
+
+    private MappedContactStore(ByteBuffer buffer, IntBuffer offsets, boolean sorted) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.sorted = sorted;
+    }
+
+    static MappedContactStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("The contact file is too large to be mapped.");
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a contact file.");
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != ContactCodec.MAGIC)
+                throw new IOException("Not a contact file.");
+            int version = buffer.get(4) & 0xFF;
+            if (version != ContactCodec.VERSION && version != ContactCodec.UNSORTED_VERSION)
+                throw new IOException("Unsupported contact file version: " + version + ".");
+
+            int count = buffer.getInt(5);
+            if (version == ContactCodec.VERSION) {
+                long table = size - 4L * count;
+                if (count < 0 || table < HEADER_SIZE)
+                    throw new IOException("Corrupt contact file.");
+                IntBuffer offsets = buffer.slice((int) table, 4 * count).asIntBuffer();
+                // The records follow each other, so their offsets must be ascending.
+                int previous = HEADER_SIZE - 1;
+                for (int i = 0; i < count; i++) {
+                    int offset = offsets.get(i);
+                    if (offset <= previous || offset >= table)
+                        throw new IOException("Corrupt contact file.");
+                    previous = offset;
+                }
+                return new MappedContactStore(buffer, offsets, true);
+            }
+
+            int[] offsets = new int[count];
+            int[] pos = {HEADER_SIZE};
+            for (int i = 0; i < count; i++) {
+                offsets[i] = pos[0];
+                int len = readVarInt(buffer, pos);
+                pos[0] += len;
+                if (pos[0] > buffer.limit())
+                    throw new IOException("Corrupt contact record.");
+            }
+            return new MappedContactStore(buffer, IntBuffer.wrap(offsets), false);
+        }
+    }
+
+    /*
+     * Whether the records are in the order of their names.
+     */
+    boolean isSorted() {
+        return sorted;
+    }
+
+    int checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().clear());
+        return (int) crc.getValue();
+    }
+
+    int size() {
+        return offsets.limit();
+    }
+
+    Contact get(int i) {
+        return new MappedContact(this, offsets.get(i));
+    }
+
+    /*
+     * The names of the records, decoded whenever one is asked for.
+     */
+    List<String> names() {
+        return new Names();
+    }
+
+    private final class Names extends AbstractList<String> implements RandomAccess {
+
+        @Override
+        public String get(int i) {
+            return field(offsets.get(i), NAME);
+        }
+
+        @Override
+        public int size() {
+            return offsets.limit();
+        }
+    }
+
+    String field(int offset, int field) {
+        int[] pos = {offset};
+        readVarInt(buffer, pos);
+        for (int i = 0; i < field; i++) {
+            int len = readVarInt(buffer, pos);
+            pos[0] += len;
+        }
+        int len = readVarInt(buffer, pos);
+        byte[] bytes = new byte[len];
+        buffer.get(pos[0], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get(pos[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
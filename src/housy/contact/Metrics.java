@@ -0,0 +1,295 @@
+package housy.contact;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/*
+ * Counters, gauges and histograms for the paths worth watching. Each one is
+ * registered as an MBean under "housy.contact" when it is first asked for,
+ * and all of them can be written to the log periodically. Recording never
+ * takes a lock, so instrumenting a hot path costs two clock reads and a
+ * couple of atomic adds.
+ *
+ * Latency histograms record nanoseconds and are named after the path with
+ * ".nanos" appended, size histograms record bytes and end in ".bytes".
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+    private static final Map<String, Object> METRICS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter;
+
+    public interface CounterMBean {
+
+        long getCount();
+    }
+
+    public interface GaugeMBean {
+
+        long getValue();
+    }
+
+    public interface HistogramMBean {
+
+        long getCount();
+
+        double getMean();
+
+        long getP50();
+
+        long getP90();
+
+        long getP99();
+
+        long getMax();
+
+        void reset();
+    }
+
+    public static final class Counter implements CounterMBean {
+
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long n) {
+            count.add(n);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount();
+        }
+    }
+
+    public static final class Gauge implements GaugeMBean {
+
+        private volatile LongSupplier value;
+
+        private Gauge(LongSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getValue() {
+            return value.getAsLong();
+        }
+
+        @Override
+        public String toString() {
+            return "value=" + getValue();
+        }
+    }
+
+    /*
+     * Buckets values the way HdrHistogram does: exact below 128, and above
+     * that 64 buckets for every power of two, so any value is reported
+     * within about 1.6% of what was recorded.
+     */
+    public static final class Histogram implements HistogramMBean {
+
+        private static final int SUB_BITS = 7;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int HALF = SUB / 2;
+        private static final int BUCKETS = SUB + (63 - SUB_BITS) * HALF;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {
+        }
+
+        private static int index(long value) {
+            if (value < SUB)
+                return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+            return SUB + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+        }
+
+        /*
+         * The largest value that falls into the bucket.
+         */
+        private static long highest(int index) {
+            if (index < SUB)
+                return index;
+            int k = index - SUB;
+            int shift = k / HALF + 1;
+            long sub = k % HALF + HALF;
+            long highest = ((sub + 1) << shift) - 1;
+            return highest < 0 ? Long.MAX_VALUE : highest;
+        }
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(index(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /*
+         * The value below which the given fraction of the recorded values
+         * lie.
+         */
+        public long percentile(double fraction) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank)
+                    return Math.min(highest(i), getMax());
+            }
+            return getMax();
+        }
+
+        @Override
+        public long getCount() {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        @Override
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        @Override
+        public long getP50() {
+            return percentile(0.5);
+        }
+
+        @Override
+        public long getP90() {
+            return percentile(0.9);
+        }
+
+        @Override
+        public long getP99() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public long getMax() {
+            return max.get();
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            sum.reset();
+            max.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d max=%d",
+                    getCount(), getMean(), getP50(), getP90(), getP99(), getMax());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return register(name, Counter.class, CounterMBean.class, Counter::new);
+    }
+
+    public static Histogram histogram(String name) {
+        return register(name, Histogram.class, HistogramMBean.class, Histogram::new);
+    }
+
+    /*
+     * A gauge reads its value when asked for it. Asking for a gauge that
+     * already exists points it at the new supplier.
+     */
+    public static Gauge gauge(String name, LongSupplier value) {
+        Gauge gauge = register(name, Gauge.class, GaugeMBean.class, () -> new Gauge(value));
+        gauge.value = value;
+        return gauge;
+    }
+
+    private static <T, M> T register(String name, Class<T> type, Class<M> mbean, Supplier<T> factory) {
+        Object metric = METRICS.computeIfAbsent(name, k -> {
+            T created = factory.get();
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName("housy.contact:type=" + type.getSimpleName() + ",name=" + ObjectName.quote(name));
+                if (!server.isRegistered(objectName))
+                    server.registerMBean(new StandardMBean(mbean.cast(created), mbean), objectName);
+            } catch (JMException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to register metric " + name + ".", e);
+            }
+            return created;
+        });
+        if (!type.isInstance(metric))
+            throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName() + ".");
+        return type.cast(metric);
+    }
+
+    public static String report() {
+        StringBuilder report = new StringBuilder("Metrics:");
+        for (Map.Entry<String, Object> e : new TreeMap<>(METRICS).entrySet()) {
+            report.append("\n  ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return report.toString();
+    }
+
+    /*
+     * Writes the report to the log every period seconds on a daemon thread.
+     */
+    public static synchronized void logEvery(long period) {
+        if (reporter != null)
+            reporter.shutdownNow();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> LOGGER.info(report()), period, period, TimeUnit.SECONDS);
+    }
+}
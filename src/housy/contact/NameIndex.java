@@ -0,0 +1,93 @@
+package housy.contact;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+ * Looks contacts up by name, ignoring case, and keeps them in the order of
+ * their names, so the sorted names never have to be sorted again. Names
+ * are unique as far as their keys tell, a contact whose name is already
+ * taken is refused. Lookups may run alongside changes.
+ */
+public final class NameIndex {
+
+    /*
+     * The order of names everywhere they are listed: by key, and names
+     * that only differ in case by the name itself.
+     */
+    static final Comparator<String> ORDER = Comparator.comparing(NameIndex::key).thenComparing(Comparator.naturalOrder());
+
+    private final NavigableMap<TextKey, Contact> contacts;
+
+    public NameIndex() {
+        contacts = new ConcurrentSkipListMap<>();
+    }
+
+    static TextKey key(String name) {
+        return TextKey.of(name);
+    }
+
+    static boolean sameName(String a, String b) {
+        return key(a).equals(key(b));
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    /*
+     * The names in order.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(contacts.size());
+        for (Contact c : contacts.values()) {
+            names.add(c.getName());
+        }
+        return names;
+    }
+
+    /*
+     * The names in order, with their keys added to keys at the same
+     * positions.
+     */
+    List<String> names(List<TextKey> keys) {
+        List<String> names = new ArrayList<>(contacts.size());
+        for (Map.Entry<TextKey, Contact> e : contacts.entrySet()) {
+            keys.add(e.getKey());
+            names.add(e.getValue().getName());
+        }
+        return names;
+    }
+
+    public Contact get(String name) {
+        return name == null ? null : contacts.get(key(name));
+    }
+
+    public boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    public boolean add(Contact c) {
+        return contacts.putIfAbsent(key(c.getName()), c) == null;
+    }
+
+    public void addAll(List<Contact> all) {
+        for (Contact c : all) {
+            add(c);
+        }
+    }
+
+    public boolean rename(Contact c, String oldName) {
+        TextKey key = key(c.getName());
+        Contact other = contacts.get(key);
+        if (other != null && other != c)
+            return false;
+        contacts.remove(key(oldName), c);
+        contacts.put(key, c);
+        return true;
+    }
+
+    public void remove(Contact c) {
+        contacts.remove(key(c.getName()), c);
+    }
+}
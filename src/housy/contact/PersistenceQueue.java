@@ -0,0 +1,101 @@
+package housy.contact;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Writes journal entries on a single background thread. Entries submitted
+ * while a write is in progress are collected and written together by the
+ * next one. The snapshot for a compaction is taken on the UI executor, the
+ * thread that owns the contact list.
+ */
+public final class PersistenceQueue {
+
+    private static final long SNAPSHOT_TIMEOUT = 1;
+    private static final long CLOSE_TIMEOUT = 10;
+
+    private final ContactSerializer serializer;
+    private final Executor ui;
+    private final Supplier<List<Contact>> snapshot;
+    private final ExecutorService writer;
+    private List<ContactJournal.Entry> pending;
+    private CompletableFuture<Void> pendingResult;
+    private volatile boolean closed;
+
+    public PersistenceQueue(ContactSerializer serializer, Executor ui, Supplier<List<Contact>> snapshot) {
+        this.serializer = serializer;
+        this.ui = ui;
+        this.snapshot = snapshot;
+        this.pending = new ArrayList<>();
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "contact-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    CompletableFuture<Void> submit(ContactJournal.Entry entry) {
+        return submit(List.of(entry));
+    }
+
+    CompletableFuture<Void> submit(List<ContactJournal.Entry> entries) {
+        synchronized (this) {
+            pending.addAll(entries);
+            if (pendingResult == null) {
+                pendingResult = new CompletableFuture<>();
+                writer.execute(this::drain);
+            }
+            return pendingResult;
+        }
+    }
+
+    private void drain() {
+        List<ContactJournal.Entry> entries;
+        CompletableFuture<Void> result;
+        synchronized (this) {
+            entries = pending;
+            result = pendingResult;
+            pending = new ArrayList<>();
+            pendingResult = null;
+        }
+
+        try {
+            serializer.append(entries);
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        try {
+            if (!closed && serializer.needsCompaction())
+                serializer.compact(CompletableFuture.supplyAsync(snapshot, ui).get(SNAPSHOT_TIMEOUT, TimeUnit.SECONDS));
+        } catch (TimeoutException e) {
+            // The UI is busy, the next write will try again.
+        } catch (IOException | ExecutionException e) {
+            Logger.getLogger(PersistenceQueue.class.getName()).log(Level.SEVERE, "Failed to start a compaction.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Waits for everything submitted so far to be written. Called when the
+     * application shuts down, possibly from the UI thread, so no compaction
+     * is started anymore.
+     */
+    public void close() {
+        closed = true;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
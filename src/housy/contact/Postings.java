@@ -0,0 +1,103 @@
+package housy.contact;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/*
+ * The contacts filed under one gram, each with the normalized field values
+ * it was indexed under. Instances never change: a change returns a new instance
+ * that shares the large base and only copies the small set of additions
+ * and removals made since the base was built. Once those grow past the
+ * square root of the base they are folded into a new base, which keeps
+ * the copying per change small on average.
+ */
+final class Postings {
+
+    private static final int MIN_DELTA = 64;
+    private static final IdentityHashMap<Contact, IndexedValues> NONE = new IdentityHashMap<>(0);
+
+    static final Postings EMPTY = new Postings(NONE, NONE, NONE);
+
+    private final IdentityHashMap<Contact, IndexedValues> base;
+    private final IdentityHashMap<Contact, IndexedValues> added;
+    private final IdentityHashMap<Contact, IndexedValues> removed;
+
+    private Postings(IdentityHashMap<Contact, IndexedValues> base, IdentityHashMap<Contact, IndexedValues> added, IdentityHashMap<Contact, IndexedValues> removed) {
+        this.base = base;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /*
+     * Takes ownership of the map, it must not be changed afterwards.
+     */
+    static Postings of(IdentityHashMap<Contact, IndexedValues> base) {
+        return new Postings(base, NONE, NONE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IdentityHashMap<Contact, IndexedValues> copy(IdentityHashMap<Contact, IndexedValues> map) {
+        return (IdentityHashMap<Contact, IndexedValues>) map.clone();
+    }
+
+    int size() {
+        return base.size() - removed.size() + added.size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    boolean contains(Contact c) {
+        return added.containsKey(c) || (base.containsKey(c) && !removed.containsKey(c));
+    }
+
+    void forEach(BiConsumer<Contact, IndexedValues> action) {
+        for (Map.Entry<Contact, IndexedValues> e : base.entrySet()) {
+            if (!removed.containsKey(e.getKey()))
+                action.accept(e.getKey(), e.getValue());
+        }
+        added.forEach(action);
+    }
+
+    IdentityHashMap<Contact, IndexedValues> toMap(int extra) {
+        IdentityHashMap<Contact, IndexedValues> result = new IdentityHashMap<>(size() + extra);
+        forEach(result::put);
+        return result;
+    }
+
+    Postings with(Contact c, IndexedValues values) {
+        IdentityHashMap<Contact, IndexedValues> add = added;
+        IdentityHashMap<Contact, IndexedValues> remove = removed;
+        if (removed.containsKey(c) && base.get(c) == values) {
+            remove = copy(removed);
+            remove.remove(c);
+        } else {
+            add = copy(added);
+            add.put(c, values);
+        }
+        return compact(add, remove);
+    }
+
+    Postings without(Contact c) {
+        IdentityHashMap<Contact, IndexedValues> add = added;
+        IdentityHashMap<Contact, IndexedValues> remove = removed;
+        if (added.containsKey(c)) {
+            add = copy(added);
+            add.remove(c);
+        }
+        if (base.containsKey(c) && !removed.containsKey(c)) {
+            remove = copy(removed);
+            remove.put(c, base.get(c));
+        }
+        return compact(add, remove);
+    }
+
+    private Postings compact(IdentityHashMap<Contact, IndexedValues> add, IdentityHashMap<Contact, IndexedValues> remove) {
+        Postings result = new Postings(base, add, remove);
+        if (add.size() + remove.size() <= Math.max(MIN_DELTA, Math.sqrt(base.size())))
+            return result;
+        return of(result.toMap(0));
+    }
+}
@@ -1,14 +1,29 @@
 package housy.contact;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.DefaultListModel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 public class SearchDialog extends javax.swing.JDialog {
 
     private static final long serialVersionUID = 1L;
+    private static final int SEARCH_DELAY = 150;
+    private static final int CACHE_SIZE = 16;
 
     private final SearchIndex index;
+    private final Map<String, List<Contact>> cache;
+    private final Timer searchTimer;
+    private final DefaultListModel<String> model;
+    private SwingWorker<List<Contact>, Void> worker;
+    private String lastTerm;
+    private List<Contact> lastResult;
     private String selection;
     
     public SearchDialog(java.awt.Frame parent, boolean modal, SearchIndex index) {
@@ -16,6 +31,34 @@ public class SearchDialog extends javax.swing.JDialog {
         initComponents();
         setLocationRelativeTo(parent);
         this.index = index;
+
+        cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Contact>> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        model = new DefaultListModel<>();
+        jList1.setModel(model);
+
+        searchTimer = new Timer(SEARCH_DELAY, e -> search(false));
+        searchTimer.setRepeats(false);
+        jTextField1.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -25,6 +68,7 @@ public class SearchDialog extends javax.swing.JDialog {
         jLabel1 = new javax.swing.JLabel();
         jTextField1 = new javax.swing.JTextField();
         jButton1 = new javax.swing.JButton();
+        jCheckBox1 = new javax.swing.JCheckBox();
         jSeparator1 = new javax.swing.JSeparator();
         jScrollPane1 = new javax.swing.JScrollPane();
         jList1 = new javax.swing.JList<>();
@@ -40,6 +84,13 @@ public class SearchDialog extends javax.swing.JDialog {
             }
         });
 
+        jCheckBox1.setText("Allow typos");
+        jCheckBox1.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jCheckBox1ActionPerformed(evt);
+            }
+        });
+
         jList1.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_INTERVAL_SELECTION);
         jList1.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseClicked(java.awt.event.MouseEvent evt) {
@@ -62,6 +113,8 @@ public class SearchDialog extends javax.swing.JDialog {
                         .addComponent(jTextField1, javax.swing.GroupLayout.PREFERRED_SIZE, 250, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(jButton1)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(jCheckBox1)
                         .addGap(0, 3, Short.MAX_VALUE))
                     .addComponent(jScrollPane1))
                 .addContainerGap())
@@ -73,7 +126,8 @@ public class SearchDialog extends javax.swing.JDialog {
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabel1)
                     .addComponent(jTextField1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
-                    .addComponent(jButton1))
+                    .addComponent(jButton1)
+                    .addComponent(jCheckBox1))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jSeparator1, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -88,20 +142,71 @@ public class SearchDialog extends javax.swing.JDialog {
         return selection == null ? "" : selection;
     }
     
-    private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton1ActionPerformed
-        String term = jTextField1.getText();
-        if (term == null || term.isBlank())
+    private void search(boolean explicit) {
+        String term = SearchIndex.normalizeQuery(jTextField1.getText());
+        if (worker != null)
+            worker.cancel(false);
+
+        if (term.isEmpty()) {
+            showResults(term, List.of(), false);
             return;
-        List<String> names = index.search(term).stream().map(Contact::getName).sorted().toList();
-        if (names.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Couldn't find anything :(");
+        }
+
+        boolean fuzzy = jCheckBox1.isSelected();
+        String key = fuzzy ? "~" + term : term;
+        List<Contact> cached = cache.get(key);
+        if (cached != null) {
+            showResults(term, cached, explicit);
             return;
         }
-        DefaultListModel<String> model = new DefaultListModel<>();
-        model.addAll(names);
-        jList1.setModel(model);
+
+        // A longer term can only match a subset of what a term it contains matched.
+        // That does not hold for typos: a longer word may be close to other words.
+        List<Contact> previous = !fuzzy && lastTerm != null && !lastTerm.isEmpty() && SearchIndex.narrows(lastTerm, term) ? lastResult : null;
+        worker = new SwingWorker<>() {
+            @Override
+            protected List<Contact> doInBackground() {
+                if (fuzzy)
+                    return index.searchFuzzy(term);
+                return previous == null ? index.search(term) : index.refine(previous, term);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled())
+                    return;
+                try {
+                    List<Contact> found = get();
+                    cache.put(key, found);
+                    showResults(term, found, explicit);
+                } catch (InterruptedException | ExecutionException ex) {
+                    Logger.getLogger(SearchDialog.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void showResults(String term, List<Contact> found, boolean explicit) {
+        lastTerm = term;
+        lastResult = found;
+        model.clear();
+        model.addAll(found.stream().map(Contact::getName).toList());
+
+        if (explicit && found.isEmpty())
+            JOptionPane.showMessageDialog(this, "Couldn't find anything :(");
+    }
+
+    private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton1ActionPerformed
+        searchTimer.stop();
+        search(true);
     }//GEN-LAST:event_jButton1ActionPerformed
 
+    private void jCheckBox1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jCheckBox1ActionPerformed
+        searchTimer.stop();
+        search(false);
+    }//GEN-LAST:event_jCheckBox1ActionPerformed
+
     private void jList1MouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_jList1MouseClicked
         String selectedValue = jList1.getSelectedValue();
         if (selectedValue == null || selectedValue.isBlank())
@@ -112,6 +217,7 @@ public class SearchDialog extends javax.swing.JDialog {
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton jButton1;
+    private javax.swing.JCheckBox jCheckBox1;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JList<String> jList1;
     private javax.swing.JScrollPane jScrollPane1;
@@ -0,0 +1,123 @@
+package housy.contact;
+
+import java.util.Locale;
+import java.util.function.IntPredicate;
+
+/*
+ * The contact fields the search index knows about. Each field decides how
+ * its values and query phrases are normalized and split into words, and
+ * how much a match in it counts towards the rank of a result.
+ */
+public enum SearchField {
+
+    NAME("name", 4, Tokenizer.NOT_NAME) {
+        @Override
+        String value(Contact c) {
+            return c.getName();
+        }
+    },
+    PHONE("phone", 2, Tokenizer.NOTHING) {
+        @Override
+        String value(Contact c) {
+            return c.getPhone();
+        }
+
+        @Override
+        String normalize(String str) {
+            StringBuilder digits = new StringBuilder(str.length());
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                if (Character.isDigit(ch))
+                    digits.append(ch);
+            }
+            return digits.toString();
+        }
+
+        @Override
+        String normalizePhrase(String str) {
+            for (int i = 0; i < str.length(); i++) {
+                if (Character.isLetter(str.charAt(i)))
+                    return "";
+            }
+            return normalize(str);
+        }
+    },
+    EMAIL("email", 3, Tokenizer.WHITESPACE_OR_AT) {
+        @Override
+        String value(Contact c) {
+            return c.getEmail();
+        }
+    },
+    NOTES("notes", 1, Tokenizer.NOT_ALPHANUMERIC) {
+        @Override
+        String value(Contact c) {
+            return c.getNotes();
+        }
+    };
+
+    private final String prefix;
+    private final int weight;
+    private final IntPredicate separator;
+
+    SearchField(String prefix, int weight, IntPredicate separator) {
+        this.prefix = prefix;
+        this.weight = weight;
+        this.separator = separator;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    char tag() {
+        return (char) ordinal();
+    }
+
+    abstract String value(Contact c);
+
+    String normalize(String str) {
+        return TextKey.fold(str);
+    }
+
+    /*
+     * A query phrase that cannot match this field normalizes to an empty
+     * string.
+     */
+    String normalizePhrase(String str) {
+        return normalize(str);
+    }
+
+    /*
+     * Hands out the words of a normalized value as offsets into it.
+     */
+    void forEachToken(String str, Tokenizer.Sink sink) {
+        Tokenizer.forEach(str, separator, sink);
+    }
+
+    String[] tokenize(String str) {
+        return Tokenizer.split(str, separator);
+    }
+
+    static SearchField byPrefix(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        for (SearchField field : values()) {
+            if (field.prefix.equals(key))
+                return field;
+        }
+        return null;
+    }
+
+    static String[] normalizedValues(Contact c) {
+        SearchField[] fields = values();
+        String[] result = new String[fields.length];
+        for (SearchField field : fields) {
+            String value = field.value(c);
+            result[field.ordinal()] = field.normalize(value == null ? " " : value);
+        }
+        return result;
+    }
+}
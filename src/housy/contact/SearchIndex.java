@@ -1,52 +1,613 @@
 package housy.contact;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
+/*
+ * Searches may run on any number of threads while contacts are added and
+ * removed. Postings are never changed once published: writers derive new
+ * postings for a gram and swap them in, so readers work on a consistent
+ * snapshot per gram without taking a lock. Writers are serialized among
+ * each other.
+ */
 public final class SearchIndex {
 
-    private final Map<String, List<Contact>> index;
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 3;
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int FUZZY_MIN_LENGTH = 3;
+
+    /*
+     * Whole name words are filed under this tag next to the grams, so the
+     * contacts of a word found by a fuzzy search can be looked up directly.
+     */
+    private static final char WORD = (char) 0xFF;
+
+    private static final Metrics.Histogram SEARCH = Metrics.histogram("search.nanos");
+    private static final Metrics.Histogram SEARCH_FUZZY = Metrics.histogram("search.fuzzy.nanos");
+    private static final Metrics.Histogram REFINE = Metrics.histogram("search.refine.nanos");
+    private static final Metrics.Histogram ADD_ALL = Metrics.histogram("index.build.nanos");
+    private static final Metrics.Histogram UPDATE = Metrics.histogram("index.update.nanos");
+    private static final Metrics.Histogram RESTORE = Metrics.histogram("index.restore.nanos");
+
+    private final Map<String, Postings> grams;
+    private final Map<Contact, IndexedValues> indexed;
+    private final TermDictionary words;
+    private final Object writeLock = new Object();
 
     public SearchIndex() {
-        index = new HashMap<>();
+        grams = new ConcurrentHashMap<>();
+        indexed = new ConcurrentHashMap<>();
+        words = new TermDictionary();
+    }
+
+    int size() {
+        return indexed.size();
+    }
+
+    int gramCount() {
+        return grams.size();
     }
 
-    private String getFirstChar(String str) {
-        return String.valueOf(str.charAt(0)).toLowerCase();
+    int wordCount() {
+        return words.size();
     }
-    
+
+    static String normalizeQuery(String term) {
+        return term == null ? "" : TextKey.fold(term.trim());
+    }
+
+    /*
+     * Whether the results for term can be found by refining the results for
+     * previous instead of searching again.
+     */
+    static boolean narrows(String previous, String term) {
+        return SearchQuery.parse(term).narrows(SearchQuery.parse(previous));
+    }
+
+    /*
+     * The tag followed by the chars of text from start to end, built as a
+     * single string.
+     */
+    private static String key(char tag, String text, int start, int end) {
+        char[] chars = new char[end - start + 1];
+        chars[0] = tag;
+        text.getChars(start, end, chars, 1);
+        return new String(chars);
+    }
+
+    private static void addGrams(char tag, String text, int start, int end, int size, Set<String> result) {
+        for (int i = start; i + size <= end; i++) {
+            result.add(key(tag, text, i, i + size));
+        }
+    }
+
+    /*
+     * Grams are keyed by the field they come from, so a query only reads the
+     * postings of the fields it asks for. The words are walked in place, the
+     * only strings made are the keys themselves.
+     */
+    private static Set<String> contactGrams(String[] values) {
+        Set<String> result = new HashSet<>();
+        for (SearchField field : SearchField.values()) {
+            String value = values[field.ordinal()];
+            field.forEachToken(value, (start, end) -> {
+                addGrams(field.tag(), value, start, end, MIN_GRAM, result);
+                addGrams(field.tag(), value, start, end, MAX_GRAM, result);
+            });
+        }
+        String name = values[SearchField.NAME.ordinal()];
+        SearchField.NAME.forEachToken(name, (start, end) -> result.add(key(WORD, name, start, end)));
+        return result;
+    }
+
+    /*
+     * Any gram of the phrase is a gram of every matching value, so the phrase
+     * only needs the longest grams each of its words can provide. Single
+     * character words carry no constraint and are left to the verification.
+     */
+    private static Set<String> phraseGrams(SearchField field, String phrase) {
+        Set<String> result = new HashSet<>();
+        field.forEachToken(phrase, (start, end) -> {
+            if (end - start >= MIN_GRAM)
+                addGrams(field.tag(), phrase, start, end, Math.min(end - start, MAX_GRAM), result);
+        });
+        return result;
+    }
+
     public void addContact(Contact c) {
-        String[] tokens = c.getName().split(" ");
+        synchronized (writeLock) {
+            IndexedValues values = new IndexedValues(SearchField.normalizedValues(c));
+            if (indexed.putIfAbsent(c, values) != null)
+                return;
 
-        for (String token : tokens) {
-            if (token.isBlank())
-                continue;
-            String key = getFirstChar(token);
-            List<Contact> list = index.getOrDefault(key, new ArrayList<>());
-            list.add(c);
-            index.put(key, list);
+            for (String gram : contactGrams(values.get())) {
+                addGram(gram, c, values);
+            }
+        }
+    }
+
+    private void addGram(String gram, Contact c, IndexedValues values) {
+        grams.compute(gram, (k, postings) -> (postings == null ? Postings.EMPTY : postings).with(c, values));
+        if (gram.charAt(0) == WORD)
+            words.add(gram.substring(1));
+    }
+
+    private void removeGram(String gram, Contact c) {
+        grams.computeIfPresent(gram, (k, postings) -> {
+            Postings result = postings.without(c);
+            return result.isEmpty() ? null : result;
+        });
+        if (gram.charAt(0) == WORD && !grams.containsKey(gram))
+            words.remove(gram.substring(1));
+    }
+
+    /*
+     * Refiles a contact after an edit, touching only the grams the edit
+     * added or removed. The grams it kept already point to its values,
+     * which are swapped for the new ones in between.
+     */
+    public void update(Contact c) {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            IndexedValues values = indexed.get(c);
+            if (values == null) {
+                addContact(c);
+                return;
+            }
+
+            String[] updated = SearchField.normalizedValues(c);
+            Set<String> before = contactGrams(values.get());
+            Set<String> after = contactGrams(updated);
+            for (String gram : before) {
+                if (!after.contains(gram))
+                    removeGram(gram, c);
+            }
+            values.set(updated);
+            for (String gram : after) {
+                if (!before.contains(gram))
+                    addGram(gram, c, values);
+            }
         }
+        UPDATE.recordSince(start);
+    }
+
+    private static IntStream range(int from, int to, boolean parallel) {
+        IntStream range = IntStream.range(from, to);
+        return parallel ? range.parallel() : range;
     }
 
+    private static int shard(String gram, int shards) {
+        return (gram.hashCode() & 0x7FFFFFFF) % shards;
+    }
+
+    /*
+     * Every chunk of contacts builds its own postings, split into shards by
+     * gram, and every shard is then merged on its own, so each gram is
+     * copied and published once per batch. Large batches do this in
+     * parallel.
+     */
     public void addAll(List<Contact> contacts) {
-        for (Contact c : contacts) {
-            addContact(c);
+        long start = System.nanoTime();
+        try {
+            addBatch(contacts);
+        } finally {
+            ADD_ALL.recordSince(start);
         }
     }
-    
+
+    private void addBatch(List<Contact> contacts) {
+        synchronized (writeLock) {
+            boolean parallel = contacts.size() >= PARALLEL_THRESHOLD;
+            Contact[] all = contacts.toArray(new Contact[0]);
+            IndexedValues[] values = new IndexedValues[all.length];
+            range(0, all.length, parallel).forEach(i -> values[i] = new IndexedValues(SearchField.normalizedValues(all[i])));
+            for (int i = 0; i < all.length; i++) {
+                if (indexed.putIfAbsent(all[i], values[i]) != null)
+                    all[i] = null;
+            }
+
+            int parts = parallel ? ForkJoinPool.getCommonPoolParallelism() : 1;
+            int chunk = (all.length + parts - 1) / parts;
+            List<List<Map<String, IdentityHashMap<Contact, IndexedValues>>>> partials = range(0, parts, parallel)
+                    .mapToObj(part -> buildPartial(all, values, part * chunk, Math.min(all.length, (part + 1) * chunk), parts))
+                    .toList();
+
+            List<Map<String, Postings>> merged = range(0, parts, parallel)
+                    .mapToObj(shard -> mergeShard(partials, shard))
+                    .toList();
+            for (Map<String, Postings> m : merged) {
+                grams.putAll(m);
+                for (String gram : m.keySet()) {
+                    if (gram.charAt(0) == WORD)
+                        words.add(gram.substring(1));
+                }
+            }
+        }
+    }
+
+    private static List<Map<String, IdentityHashMap<Contact, IndexedValues>>> buildPartial(Contact[] all, IndexedValues[] values, int from, int to, int shards) {
+        List<Map<String, IdentityHashMap<Contact, IndexedValues>>> result = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            result.add(new HashMap<>());
+        }
+
+        for (int i = from; i < to; i++) {
+            Contact c = all[i];
+            if (c == null)
+                continue;
+            for (String gram : contactGrams(values[i].get())) {
+                result.get(shard(gram, shards)).computeIfAbsent(gram, k -> new IdentityHashMap<>()).put(c, values[i]);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The first partial postings of a gram become the merged postings, the
+     * others are added to them. Postings already in the index are copied
+     * once, sized for everything the batch adds.
+     */
+    private Map<String, Postings> mergeShard(List<List<Map<String, IdentityHashMap<Contact, IndexedValues>>>> partials, int shard) {
+        Map<String, IdentityHashMap<Contact, IndexedValues>> postings = new HashMap<>();
+        for (List<Map<String, IdentityHashMap<Contact, IndexedValues>>> partial : partials) {
+            for (Map.Entry<String, IdentityHashMap<Contact, IndexedValues>> e : partial.get(shard).entrySet()) {
+                IdentityHashMap<Contact, IndexedValues> merged = postings.get(e.getKey());
+                if (merged != null) {
+                    merged.putAll(e.getValue());
+                    continue;
+                }
+
+                Postings current = grams.get(e.getKey());
+                if (current == null) {
+                    merged = e.getValue();
+                } else {
+                    merged = current.toMap(e.getValue().size());
+                    merged.putAll(e.getValue());
+                }
+                postings.put(e.getKey(), merged);
+            }
+        }
+
+        Map<String, Postings> result = new HashMap<>();
+        for (Map.Entry<String, IdentityHashMap<Contact, IndexedValues>> e : postings.entrySet()) {
+            result.put(e.getKey(), Postings.of(e.getValue()));
+        }
+        return result;
+    }
+
+    /*
+     * Writes the grams in sorted order, each key sharing its prefix with the
+     * key before it, followed by the positions of its contacts as ascending
+     * deltas. Contacts without a position are left out. A count of zero
+     * ends the postings. Runs alongside changes: a contact changed while
+     * this runs may be written before or after the change.
+     */
+    void write(DataOutput out, Map<Contact, Integer> positions) throws IOException {
+        List<String> keys = new ArrayList<>(grams.keySet());
+        Collections.sort(keys);
+        String previous = "";
+        for (String key : keys) {
+            Postings postings = grams.get(key);
+            if (postings == null)
+                continue;
+            IntStream.Builder found = IntStream.builder();
+            postings.forEach((c, values) -> {
+                Integer position = positions.get(c);
+                if (position != null)
+                    found.add(position);
+            });
+            int[] sorted = found.build().sorted().toArray();
+            if (sorted.length == 0)
+                continue;
+
+            int shared = 0;
+            int max = Math.min(previous.length(), key.length());
+            while (shared < max && previous.charAt(shared) == key.charAt(shared)) {
+                shared++;
+            }
+            if (shared > 0 && Character.isHighSurrogate(key.charAt(shared - 1)))
+                shared--;
+            byte[] suffix = key.substring(shared).getBytes(StandardCharsets.UTF_8);
+
+            ContactCodec.writeVarInt(out, sorted.length);
+            ContactCodec.writeVarInt(out, shared);
+            ContactCodec.writeVarInt(out, suffix.length);
+            out.write(suffix);
+            int last = 0;
+            for (int position : sorted) {
+                ContactCodec.writeVarInt(out, position - last);
+                last = position;
+            }
+            previous = key;
+        }
+        ContactCodec.writeVarInt(out, 0);
+    }
+
+    /*
+     * Fills an empty index from postings written by write, mapping every
+     * position to the contact at that index. Null contacts are skipped.
+     * Nothing is published unless the whole input is read.
+     */
+    void restore(ByteBuffer in, Contact[] contacts) throws IOException {
+        long start = System.nanoTime();
+        IndexedValues[] values = new IndexedValues[contacts.length];
+        range(0, contacts.length, contacts.length >= PARALLEL_THRESHOLD).forEach(i -> {
+            if (contacts[i] != null)
+                values[i] = new IndexedValues(SearchField.normalizedValues(contacts[i]));
+        });
+
+        Map<String, Postings> restored = new HashMap<>();
+        String previous = "";
+        int count;
+        while ((count = ContactCodec.readVarInt(in)) != 0) {
+            int shared = ContactCodec.readVarInt(in);
+            int length = ContactCodec.readVarInt(in);
+            if (shared > previous.length() || length > in.remaining())
+                throw new IOException("Corrupt index snapshot.");
+            byte[] suffix = new byte[length];
+            in.get(suffix);
+            String key = previous.substring(0, shared) + new String(suffix, StandardCharsets.UTF_8);
+
+            IdentityHashMap<Contact, IndexedValues> postings = new IdentityHashMap<>(count);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                position += ContactCodec.readVarInt(in);
+                if (position < 0 || position >= contacts.length)
+                    throw new IOException("Corrupt index snapshot.");
+                if (contacts[position] != null)
+                    postings.put(contacts[position], values[position]);
+            }
+            if (!postings.isEmpty())
+                restored.put(key, Postings.of(postings));
+            previous = key;
+        }
+
+        synchronized (writeLock) {
+            for (int i = 0; i < contacts.length; i++) {
+                if (contacts[i] != null)
+                    indexed.put(contacts[i], values[i]);
+            }
+            grams.putAll(restored);
+            for (String gram : restored.keySet()) {
+                if (gram.charAt(0) == WORD)
+                    words.add(gram.substring(1));
+            }
+        }
+        RESTORE.recordSince(start);
+    }
+
     public void remove(Contact contact) {
-        String[] tokens = contact.getName().split(" ");
-        
-        for (String token : tokens) {
-            String key = getFirstChar(token);
-            List<Contact> found = index.getOrDefault(key, new ArrayList<>());
-            found.remove(contact);
-            index.put(key, found);
+        synchronized (writeLock) {
+            IndexedValues values = indexed.remove(contact);
+            if (values == null)
+                return;
+
+            for (String gram : contactGrams(values.get())) {
+                removeGram(gram, contact);
+            }
         }
     }
-    
+
+    /*
+     * The postings a phrase has to read in one field, smallest first. Empty
+     * when nothing can match and null when the phrase is too short for
+     * grams, in which case every contact has to be checked.
+     */
+    private List<Postings> plan(SearchField field, String phrase) {
+        Set<String> keys = phraseGrams(field, phrase);
+        if (keys.isEmpty())
+            return null;
+
+        List<Postings> postings = new ArrayList<>();
+        for (String key : keys) {
+            Postings found = grams.get(key);
+            if (found == null)
+                return List.of();
+            postings.add(found);
+        }
+        postings.sort(Comparator.comparingInt(Postings::size));
+        return postings;
+    }
+
+    /*
+     * The plans of every field a clause may match, or null when the clause
+     * needs a full scan.
+     */
+    private List<List<Postings>> plan(SearchQuery.Clause clause) {
+        List<List<Postings>> plans = new ArrayList<>();
+        for (SearchField field : SearchField.values()) {
+            String phrase = clause.phrase(field);
+            if (phrase.isEmpty())
+                continue;
+            List<Postings> plan = plan(field, phrase);
+            if (plan == null)
+                return null;
+            plans.add(plan);
+        }
+        return plans;
+    }
+
+    private long cost(List<List<Postings>> plans) {
+        if (plans == null)
+            return indexed.size();
+        long cost = 0;
+        for (List<Postings> plan : plans) {
+            cost += plan.isEmpty() ? 0 : plan.get(0).size();
+        }
+        return cost;
+    }
+
+    /*
+     * Candidates come from the clause with the smallest postings; every other
+     * clause is only checked against the values of those candidates. Results
+     * are ranked by how well and in which fields they matched.
+     */
     public List<Contact> search(String term) {
-        String key = getFirstChar(term);
-        List<Contact> found = index.getOrDefault(key, new ArrayList<>());
-        return found.stream().filter(x -> x.getName().toLowerCase().contains(term.toLowerCase())).toList();
+        long start = System.nanoTime();
+        try {
+            return find(term);
+        } finally {
+            SEARCH.recordSince(start);
+        }
+    }
+
+    private List<Contact> find(String term) {
+        SearchQuery query = SearchQuery.parse(term);
+        if (query.isEmpty())
+            return List.of();
+
+        List<List<Postings>> best = null;
+        long bestCost = Long.MAX_VALUE;
+        for (SearchQuery.Clause clause : query.getClauses()) {
+            List<List<Postings>> plans = plan(clause);
+            long cost = cost(plans);
+            if (cost < bestCost) {
+                best = plans;
+                bestCost = cost;
+            }
+        }
+
+        Map<Contact, Integer> scores = new IdentityHashMap<>();
+        if (best == null) {
+            indexed.forEach((c, values) -> score(query, c, values, scores));
+            return rank(scores);
+        }
+        for (List<Postings> plan : best) {
+            if (plan.isEmpty())
+                continue;
+            List<Postings> rest = plan.subList(1, plan.size());
+            plan.get(0).forEach((c, values) -> {
+                if (rest.stream().allMatch(x -> x.contains(c)))
+                    score(query, c, values, scores);
+            });
+        }
+        return rank(scores);
+    }
+
+    private static void score(SearchQuery query, Contact c, IndexedValues values, Map<Contact, Integer> scores) {
+        if (scores.containsKey(c))
+            return;
+        int score = query.score(values.get());
+        if (score >= 0)
+            scores.put(c, score);
+    }
+
+    private static List<Contact> rank(Map<Contact, Integer> scores) {
+        List<Contact> result = new ArrayList<>(scores.keySet());
+        result.sort(Comparator.<Contact>comparingInt(scores::get).reversed().thenComparing(Contact::getName));
+        return result;
+    }
+
+    /*
+     * Like search, but a word of the name may also be matched by a name word
+     * within one edit for short words and two edits for longer ones. Exact
+     * results come first, the others follow ordered by their distance.
+     * Only terms that search names can be fuzzy, other terms are searched
+     * exactly.
+     */
+    public List<Contact> searchFuzzy(String term) {
+        long start = System.nanoTime();
+        try {
+            return findFuzzy(term);
+        } finally {
+            SEARCH_FUZZY.recordSince(start);
+        }
+    }
+
+    private List<Contact> findFuzzy(String term) {
+        List<Contact> exact = find(term);
+        SearchQuery query = SearchQuery.parse(term);
+        List<String> typed = new ArrayList<>();
+        for (SearchQuery.Clause clause : query.getClauses()) {
+            if (clause.getField() != null && clause.getField() != SearchField.NAME)
+                return exact;
+            String phrase = clause.phrase(SearchField.NAME);
+            if (!phrase.isEmpty())
+                typed.addAll(Arrays.asList(SearchField.NAME.tokenize(phrase)));
+        }
+        if (typed.stream().noneMatch(w -> w.length() >= FUZZY_MIN_LENGTH))
+            return exact;
+
+        // Every contact with a name word close to one of the typed words is a candidate.
+        Map<Contact, Integer> distances = new IdentityHashMap<>();
+        for (Contact c : exact) {
+            distances.put(c, -1);
+        }
+        for (String word : typed) {
+            if (word.length() < FUZZY_MIN_LENGTH)
+                continue;
+            for (String match : words.match(word, maxDistance(word)).keySet()) {
+                Postings postings = grams.get(WORD + match);
+                if (postings == null)
+                    continue;
+                postings.forEach((c, values) -> {
+                    if (distances.containsKey(c))
+                        return;
+                    int distance = distance(typed, values.get()[SearchField.NAME.ordinal()]);
+                    if (distance >= 0)
+                        distances.put(c, distance);
+                });
+            }
+        }
+
+        List<Contact> result = new ArrayList<>(exact);
+        distances.entrySet().stream()
+                .filter(e -> e.getValue() >= 0)
+                .sorted(Map.Entry.<Contact, Integer>comparingByValue().thenComparing(e -> e.getKey().getName()))
+                .forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    private static int maxDistance(String word) {
+        return word.length() <= 4 ? 1 : 2;
+    }
+
+    /*
+     * The total number of edits that make every typed word appear in the
+     * name, or -1 when one of them is too far off.
+     */
+    private static int distance(List<String> typed, String name) {
+        String[] tokens = SearchField.NAME.tokenize(name);
+        int total = 0;
+        for (String word : typed) {
+            if (name.contains(word))
+                continue;
+            if (word.length() < FUZZY_MIN_LENGTH)
+                return -1;
+
+            int max = maxDistance(word);
+            int best = max + 1;
+            for (String token : tokens) {
+                best = Math.min(best, TermDictionary.distance(word, token, max));
+            }
+            if (best > max)
+                return -1;
+            total += best;
+        }
+        return total;
+    }
+
+    public List<Contact> refine(Collection<Contact> candidates, String term) {
+        long start = System.nanoTime();
+        SearchQuery query = SearchQuery.parse(term);
+        if (query.isEmpty())
+            return List.of();
+
+        Map<Contact, Integer> scores = new IdentityHashMap<>();
+        for (Contact c : candidates) {
+            IndexedValues values = indexed.get(c);
+            if (values != null)
+                score(query, c, values, scores);
+        }
+        List<Contact> result = rank(scores);
+        REFINE.recordSince(start);
+        return result;
     }
 }
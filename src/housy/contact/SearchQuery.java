@@ -0,0 +1,128 @@
+package housy.contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A parsed search term. Words prefixed with a field, as in "email:acme.com",
+ * start a clause for that field and the words after them belong to it until
+ * the next prefix. Words before any prefix form a clause that may match any
+ * field. A contact matches when it matches every clause.
+ */
+final class SearchQuery {
+
+    static final class Clause {
+
+        private final SearchField field;
+        private final String phrase;
+        private final String[] normalized;
+
+        private Clause(SearchField field, String phrase) {
+            this.field = field;
+            this.phrase = TextKey.fold(phrase);
+            this.normalized = new String[SearchField.values().length];
+            for (SearchField f : SearchField.values()) {
+                if (field == null || field == f)
+                    normalized[f.ordinal()] = f.normalizePhrase(phrase);
+            }
+        }
+
+        SearchField getField() {
+            return field;
+        }
+
+        /*
+         * The phrase as the given field sees it, or an empty string when the
+         * clause cannot match that field.
+         */
+        String phrase(SearchField f) {
+            String p = normalized[f.ordinal()];
+            return p == null ? "" : p;
+        }
+
+        int score(String[] values) {
+            int best = -1;
+            for (SearchField f : SearchField.values()) {
+                String p = phrase(f);
+                if (p.isEmpty())
+                    continue;
+                String value = values[f.ordinal()];
+                if (!value.contains(p))
+                    continue;
+                int score = f.getWeight() + (value.startsWith(p) ? 1 : 0) + (value.equals(p) ? 2 : 0);
+                best = Math.max(best, score);
+            }
+            return best;
+        }
+
+        private boolean narrows(Clause previous) {
+            return field == previous.field && phrase.contains(previous.phrase);
+        }
+    }
+
+    private final List<Clause> clauses;
+
+    private SearchQuery(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    static SearchQuery parse(String term) {
+        List<Clause> clauses = new ArrayList<>();
+        if (term == null || term.isBlank())
+            return new SearchQuery(clauses);
+
+        SearchField field = null;
+        List<String> words = new ArrayList<>();
+        for (String token : term.trim().split("\\s+")) {
+            int colon = token.indexOf(':');
+            SearchField prefixed = colon > 0 ? SearchField.byPrefix(token.substring(0, colon)) : null;
+            if (prefixed == null) {
+                words.add(token);
+                continue;
+            }
+
+            if (!words.isEmpty())
+                clauses.add(new Clause(field, String.join(" ", words)));
+            field = prefixed;
+            words.clear();
+            if (colon + 1 < token.length())
+                words.add(token.substring(colon + 1));
+        }
+        if (!words.isEmpty())
+            clauses.add(new Clause(field, String.join(" ", words)));
+        return new SearchQuery(clauses);
+    }
+
+    List<Clause> getClauses() {
+        return clauses;
+    }
+
+    boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    int score(String[] values) {
+        int total = 0;
+        for (Clause clause : clauses) {
+            int score = clause.score(values);
+            if (score < 0)
+                return -1;
+            total += score;
+        }
+        return total;
+    }
+
+    /*
+     * Whether everything this query matches was matched by the previous
+     * one, so its results can be filtered instead of searched again.
+     */
+    boolean narrows(SearchQuery previous) {
+        if (previous.isEmpty())
+            return false;
+        for (Clause p : previous.clauses) {
+            if (clauses.stream().noneMatch(c -> c.narrows(p)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package housy.contact;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*
+ * The distinct words of all names, sorted and grouped by length. Words within
+ * a small edit distance of a query word are found by running a Levenshtein
+ * automaton over the groups of nearby lengths as if they were tries: words
+ * sharing a prefix share the rows computed for it, and once no word of that
+ * length can come within the distance any more, every word with that prefix
+ * is skipped at once.
+ *
+ * The distance is the optimal string alignment distance, so swapping two
+ * neighbouring letters counts as a single edit.
+ */
+final class TermDictionary {
+
+    private final Map<Integer, NavigableSet<String>> terms = new ConcurrentHashMap<>();
+
+    void add(String term) {
+        terms.computeIfAbsent(term.length(), k -> new ConcurrentSkipListSet<>()).add(term);
+    }
+
+    void remove(String term) {
+        NavigableSet<String> group = terms.get(term.length());
+        if (group != null)
+            group.remove(term);
+    }
+
+    int size() {
+        return terms.values().stream().mapToInt(NavigableSet::size).sum();
+    }
+
+    /*
+     * The words within max edits of word, mapped to their distance.
+     */
+    Map<String, Integer> match(String word, int max) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        int n = word.length();
+        int[][] rows = new int[n + max + 1][n + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+
+        for (int length = Math.max(1, n - max); length <= n + max; length++) {
+            NavigableSet<String> group = terms.get(length);
+            if (group != null)
+                match(word, max, group, rows, result);
+        }
+        return result;
+    }
+
+    private static void match(String word, int max, NavigableSet<String> group, int[][] rows, Map<String, Integer> result) {
+        int n = word.length();
+        String previous = "";
+        String term = group.isEmpty() ? null : group.first();
+        while (term != null) {
+            int depth = commonPrefix(previous, term);
+            int pruned = -1;
+            for (int i = depth + 1; i <= term.length(); i++) {
+                if (step(word, term, i, rows) > max) {
+                    pruned = i;
+                    break;
+                }
+            }
+
+            if (pruned >= 0) {
+                // Nothing that starts with this prefix can come within max edits.
+                String prefix = term.substring(0, pruned);
+                previous = prefix.substring(0, pruned - 1);
+                term = group.higher(prefix + Character.MAX_VALUE);
+                continue;
+            }
+
+            int distance = rows[term.length()][n];
+            if (distance <= max)
+                result.put(term, distance);
+            previous = term;
+            term = group.higher(term);
+        }
+    }
+
+    /*
+     * Fills the row for the first i letters of term from the rows before it
+     * and returns the fewest edits any completion of the row can still end
+     * with: an entry cannot get any lower, and the letters left over in term
+     * and word cost at least their difference in length.
+     */
+    private static int step(String word, String term, int i, int[][] rows) {
+        int[] row = rows[i];
+        int[] above = rows[i - 1];
+        char c = term.charAt(i - 1);
+        int left = term.length() - i - word.length();
+        row[0] = i;
+        int min = i + Math.abs(left);
+        for (int j = 1; j < row.length; j++) {
+            int cost = word.charAt(j - 1) == c ? 0 : 1;
+            int value = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+            if (i > 1 && j > 1 && c == word.charAt(j - 2) && term.charAt(i - 2) == word.charAt(j - 1))
+                value = Math.min(value, rows[i - 2][j - 2] + 1);
+            row[j] = value;
+            min = Math.min(min, value + Math.abs(left + j));
+        }
+        return min;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /*
+     * The distance between a and b, or max + 1 when it is larger than max.
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max)
+            return max + 1;
+
+        int[][] rows = new int[b.length() + 1][a.length() + 1];
+        for (int j = 0; j <= a.length(); j++) {
+            rows[0][j] = j;
+        }
+        for (int i = 1; i <= b.length(); i++) {
+            if (step(a, b, i, rows) > max)
+                return max + 1;
+        }
+        return Math.min(rows[b.length()][a.length()], max + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package housy.contact;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/*
+ * Normalized forms of text for matching and ordering, computed once per
+ * value instead of on every comparison.
+ *
+ * The folded form drops case and accents and unifies compatibility
+ * characters, so "jose" finds "José" and "ﬁ" finds "fi". A key orders
+ * names by their folded form first, so accented names sort among the
+ * letters they are based on, and then by the name without case, so "Emile"
+ * and "Émile" are two names next to each other. Names that only differ in
+ * case or in how their accents are encoded have equal keys, and keys are
+ * equal exactly when they compare as equal, so hash sets and sorted maps
+ * of keys agree on which names are the same. Plain ASCII, the common
+ * case, takes a fast path that only lowercases.
+ */
+final class TextKey implements Comparable<TextKey> {
+
+    private final String folded;
+    private final String lower;
+
+    private TextKey(String folded, String lower) {
+        this.folded = folded;
+        this.lower = lower;
+    }
+
+    static TextKey of(String name) {
+        if (isAscii(name)) {
+            String lower = lowerAscii(name);
+            return new TextKey(lower, lower);
+        }
+        return new TextKey(fold(name), Normalizer.normalize(name, Normalizer.Form.NFC).toLowerCase(Locale.ROOT));
+    }
+
+    static String fold(String text) {
+        if (isAscii(text))
+            return lowerAscii(text);
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); ) {
+            int cp = decomposed.codePointAt(i);
+            int type = Character.getType(cp);
+            if (type != Character.NON_SPACING_MARK && type != Character.ENCLOSING_MARK && type != Character.COMBINING_SPACING_MARK)
+                result.appendCodePoint(cp);
+            i += Character.charCount(cp);
+        }
+        // Upper case first, so "ß" folds to "ss" and the dotless i to i.
+        return result.toString().toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static String lowerAscii(String text) {
+        int i = 0;
+        while (i < text.length() && (text.charAt(i) < 'A' || text.charAt(i) > 'Z')) {
+            i++;
+        }
+        if (i == text.length())
+            return text;
+
+        char[] chars = text.toCharArray();
+        for (; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z')
+                chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public int compareTo(TextKey other) {
+        int c = folded.compareTo(other.folded);
+        return c != 0 ? c : lower.compareTo(other.lower);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TextKey && folded.equals(((TextKey) o).folded) && lower.equals(((TextKey) o).lower);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * folded.hashCode() + lower.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return lower;
+    }
+}
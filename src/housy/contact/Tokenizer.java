@@ -0,0 +1,63 @@
+package housy.contact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/*
+ * Splits text into words by char offsets. A word is a run of code points the
+ * separator does not match; the words are handed out as offsets into the
+ * text, so walking them needs no regular expression, array or substring.
+ */
+final class Tokenizer {
+
+    interface Sink {
+
+        void token(int start, int end);
+    }
+
+    /*
+     * Every Unicode space, including the no-break and ideographic ones.
+     */
+    static final IntPredicate WHITESPACE = cp -> Character.isWhitespace(cp) || Character.isSpaceChar(cp);
+    static final IntPredicate WHITESPACE_OR_AT = cp -> cp == '@' || WHITESPACE.test(cp);
+    static final IntPredicate NOT_ALPHANUMERIC = cp -> !Character.isLetter(cp) && !isNumber(cp);
+    /*
+     * Like NOT_ALPHANUMERIC, but apostrophes are part of a name, so "Smith,"
+     * is "smith" and "Jean-Luc" two words while "O'Brien" stays one.
+     */
+    static final IntPredicate NOT_NAME = cp -> cp != '\'' && cp != '\u2019' && NOT_ALPHANUMERIC.test(cp);
+    static final IntPredicate NOTHING = cp -> false;
+
+    private Tokenizer() {
+    }
+
+    private static boolean isNumber(int cp) {
+        int type = Character.getType(cp);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+
+    static void forEach(String text, IntPredicate separator, Sink sink) {
+        int start = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            if (separator.test(cp)) {
+                if (start >= 0)
+                    sink.token(start, i);
+                start = -1;
+            } else if (start < 0) {
+                start = i;
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0)
+            sink.token(start, text.length());
+    }
+
+    static String[] split(String text, IntPredicate separator) {
+        List<String> tokens = new ArrayList<>();
+        forEach(text, separator, (start, end) -> tokens.add(text.substring(start, end)));
+        return tokens.toArray(new String[0]);
+    }
+}
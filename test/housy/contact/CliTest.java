@@ -0,0 +1,70 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CliTest {
+
+    @TempDir
+    Path dir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        out.reset();
+        err.reset();
+        String[] all = new String[args.length + 2];
+        all[0] = "--dir";
+        all[1] = dir.resolve("data").toString();
+        System.arraycopy(args, 0, all, 2, args.length);
+        return Cli.run(all, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    private String out() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void importedContactsAreSavedAndFound() throws IOException {
+        Path csv = dir.resolve("in.csv");
+        Files.writeString(csv, "Name,Phone,Email\nAnna Bell,555,anna@example.com\nJosé Álvarez,600,jose@example.es\n");
+
+        assertEquals(Cli.OK, run("--import", csv.toString(), "--query", "anna"));
+        assertEquals("Anna Bell\t555\tanna@example.com" + System.lineSeparator(), out());
+
+        // A second run reads them back and skips the ones already there.
+        assertEquals(Cli.OK, run("--import", csv.toString(), "--fuzzy", "jsoe", "--compact"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Imported 0 contacts, skipped 2"));
+        assertTrue(out().startsWith("José Álvarez\t600\t"));
+
+        Path vcf = dir.resolve("out.vcf");
+        assertEquals(Cli.OK, run("--export", vcf.toString(), "--metrics"));
+        assertTrue(Files.readString(vcf).contains("FN:José Álvarez"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Metrics:"));
+    }
+
+    @Test
+    void badArgumentsAreRejectedBeforeAnythingRuns() {
+        assertEquals(Cli.USAGE, run("--query"));
+        assertEquals(Cli.USAGE, run("--export", "x.csv", "--bogus"));
+        assertFalse(Files.exists(dir.resolve("x.csv")));
+        assertEquals(Cli.USAGE, run());
+        assertEquals(Cli.OK, run("--help"));
+        assertTrue(out().startsWith("Usage:"));
+    }
+
+    @Test
+    void failingActionsExitWithAnError() {
+        assertEquals(Cli.FAILED, run("--import", dir.resolve("missing.csv").toString()));
+        assertTrue(err.toString(StandardCharsets.UTF_8).startsWith("Failed: "));
+    }
+}
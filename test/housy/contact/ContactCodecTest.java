@@ -0,0 +1,70 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ContactCodecTest {
+
+    @Test
+    void recordsRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ContactCodec.writeHeader(out, TestContacts.sample().size());
+        for (Contact c : TestContacts.sample()) {
+            ContactCodec.writeRecord(out, c, c.getName());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(TestContacts.sample().size(), ContactCodec.readHeader(in));
+        for (Contact c : TestContacts.sample()) {
+            assertEquals(TestContacts.fields(c), TestContacts.fields(ContactCodec.readRecord(in)));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void recordIsWrittenUnderTheGivenName() throws IOException {
+        Contact c = TestContacts.contact("New Name", "1", "a@b.c", " ");
+        byte[] body = ContactCodec.encode(c, "Old Name");
+        assertEquals("Old Name", ContactCodec.decode(body, 0, body.length).getName());
+    }
+
+    @Test
+    void varIntsRoundTrip() throws IOException {
+        int[] values = {0, 1, 127, 128, 300, 16383, 16384, 1 << 21, Integer.MAX_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int v : values) {
+            ContactCodec.writeVarInt(out, v);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        for (int v : values) {
+            assertEquals(v, ContactCodec.readVarInt(in));
+            assertEquals(v, ContactCodec.readVarInt(buffer));
+        }
+    }
+
+    @Test
+    void truncatedRecordIsRejected() throws IOException {
+        Contact c = TestContacts.sample().get(1);
+        byte[] body = ContactCodec.encode(c);
+        assertThrows(IOException.class, () -> ContactCodec.decode(body, 0, body.length - 3));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ContactCodec.writeRecord(new DataOutputStream(bytes), c, c.getName());
+        byte[] torn = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+        assertThrows(EOFException.class, () -> ContactCodec.readRecord(new DataInputStream(new ByteArrayInputStream(torn))));
+    }
+
+    @Test
+    void otherFilesAreRejected() {
+        byte[] header = {0, 0, 0, 1, 2, 0, 0, 0, 0};
+        assertThrows(IOException.class, () -> ContactCodec.readHeader(new DataInputStream(new ByteArrayInputStream(header))));
+    }
+}
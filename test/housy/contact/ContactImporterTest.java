@@ -0,0 +1,79 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContactImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Contact> read(Path file, int batchSize) throws IOException {
+        List<Contact> read = new ArrayList<>();
+        long count = ContactImporter.read(file, batchSize, batch -> {
+            assertTrue(batch.size() <= batchSize);
+            read.addAll(batch);
+        });
+        assertEquals(read.size(), count);
+        return read;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"contacts.csv", "contacts.vcf"})
+    void exportedContactsAreImported(String name) throws IOException {
+        Path file = dir.resolve(name);
+        ContactExporter.write(file, TestContacts.sample(), count -> {
+        });
+
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(read(file, 2)));
+    }
+
+    @Test
+    void columnsAreMatchedByName() throws IOException {
+        Path file = dir.resolve("contacts.csv");
+        Files.writeString(file, "﻿E-mail Address;Last Name;First Name;Mobile Phone\n"
+                + "anna@example.com;Bell;Anna;555\n"
+                + ";;;\n", StandardCharsets.UTF_8);
+
+        List<Contact> read = read(file, 10);
+        assertEquals(1, read.size());
+        assertEquals(List.of("Anna Bell", "555", "anna@example.com", ""), TestContacts.fields(read.get(0)));
+    }
+
+    @Test
+    void vCardNameIsSplitIntoFamilyAndGivenNames() throws IOException {
+        Path file = dir.resolve("contacts.vcf");
+        ContactExporter.write(file, TestContacts.sample(), count -> {
+        });
+        String vcf = Files.readString(file);
+        assertTrue(vcf.contains("\r\nN:Álvarez;José;;;\r\n"), vcf);
+        assertTrue(vcf.contains("\r\nN:bob;;;;\r\n"), vcf);
+
+        // Readers that only know N put the name back together the same way.
+        Files.writeString(file, vcf.replaceAll("\r\nFN:[^\r]*", ""));
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(read(file, 10)));
+    }
+
+    @Test
+    void unclosedQuoteIsReported() throws IOException {
+        StringBuilder csv = new StringBuilder("Name,Phone\nAnna,1\n\"Bob,2\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append("Row ").append(i).append(',').append(i).append('\n');
+        }
+        Path file = dir.resolve("contacts.csv");
+        Files.writeString(file, csv);
+
+        IOException e = assertThrows(IOException.class, () -> read(file, 10));
+        assertTrue(e.getMessage().contains("line 3"), e.getMessage());
+    }
+}
@@ -0,0 +1,128 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContactJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private Path path() {
+        return dir.resolve("contacts.journal");
+    }
+
+    private ContactJournal.Replay replay() throws IOException {
+        ContactJournal journal = new ContactJournal(path());
+        try {
+            return journal.replay();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static List<String> names(ContactJournal.Replay replay) {
+        return replay.contacts().stream().map(Contact::getName).toList();
+    }
+
+    @Test
+    void entriesAreReplayed() throws IOException {
+        Contact anna = TestContacts.contact("Anna", "1", " ", " ");
+        Contact bob = TestContacts.contact("Bob", "2", " ", " ");
+        ContactJournal journal = new ContactJournal(path());
+        journal.replay();
+        journal.append(List.of(ContactJournal.Entry.add(anna), ContactJournal.Entry.add(bob)));
+        bob.setName("Carl");
+        journal.append(ContactJournal.Entry.update("Bob", bob));
+        journal.append(ContactJournal.Entry.delete(anna));
+        journal.close();
+
+        ContactJournal.Replay replay = replay();
+        assertEquals(List.of("Carl"), names(replay));
+        assertEquals("2", replay.contacts().iterator().next().getPhone());
+        assertTrue(replay.hides(TestContacts.contact("anna", " ", " ", " ")));
+        assertTrue(replay.hides(TestContacts.contact("Bob", " ", " ", " ")));
+        assertFalse(replay.hides(TestContacts.contact("Dora", " ", " ", " ")));
+    }
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        ContactJournal journal = new ContactJournal(path());
+        journal.replay();
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Anna", "1", " ", " ")));
+        long valid = Files.size(path());
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Bob", "2", " ", " ")));
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(path().toFile(), "rw")) {
+            file.setLength(file.length() - 2);
+        }
+
+        journal = new ContactJournal(path());
+        assertEquals(List.of("Anna"), names(journal.replay()));
+        assertEquals(valid, Files.size(path()));
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Carl", "3", " ", " ")));
+        journal.close();
+
+        assertEquals(List.of("Anna", "Carl"), names(replay()));
+    }
+
+    @Test
+    void corruptRecordEndsTheReplay() throws IOException {
+        ContactJournal journal = new ContactJournal(path());
+        journal.replay();
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Anna", "1", " ", " ")));
+        long valid = Files.size(path());
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Bob", "2", " ", " ")));
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Carl", "3", " ", " ")));
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(path().toFile(), "rw")) {
+            file.seek(valid + 3);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertEquals(List.of("Anna"), names(replay()));
+        assertEquals(valid, Files.size(path()));
+    }
+
+    @Test
+    void corruptLengthEndsTheReplay() throws IOException {
+        ContactJournal journal = new ContactJournal(path());
+        journal.replay();
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Anna", "1", " ", " ")));
+        long valid = Files.size(path());
+        journal.append(ContactJournal.Entry.add(TestContacts.contact("Bob", "2", " ", " ")));
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(path().toFile(), "rw")) {
+            // The length after the op byte becomes Integer.MAX_VALUE.
+            file.seek(valid + 1);
+            file.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        }
+
+        assertEquals(List.of("Anna"), names(replay()));
+        assertEquals(valid, Files.size(path()));
+    }
+
+    @Test
+    void rotatedJournalIsReplayedFirst() throws IOException {
+        Contact anna = TestContacts.contact("Anna", "1", " ", " ");
+        ContactJournal journal = new ContactJournal(path());
+        journal.replay();
+        journal.append(ContactJournal.Entry.add(anna));
+        journal.rotate();
+        assertTrue(journal.isRotated());
+        anna.setPhone("9");
+        journal.append(ContactJournal.Entry.update("Anna", anna));
+        journal.close();
+
+        ContactJournal.Replay replay = replay();
+        assertEquals(List.of("Anna"), names(replay));
+        assertEquals("9", replay.contacts().iterator().next().getPhone());
+    }
+}
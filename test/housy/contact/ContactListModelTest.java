@@ -0,0 +1,124 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks that the list stays in the order of a fresh sort through adds,
+ * removes and renames, and that it finds names by their keys.
+ */
+class ContactListModelTest {
+
+    private static final String[] WORDS = {"anna", "Anna", "Émile", "emile", "Zoë", "zoe", "bob", "李", "Ærø", "ﬁle", "de Vries"};
+
+    private static List<String> shown(ContactListModel model) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < model.getSize(); i++) {
+            names.add(model.getElementAt(i));
+        }
+        return names;
+    }
+
+    @Test
+    void keysOrderLikeTheNames() {
+        assertTrue(TextKey.of("Emile").compareTo(TextKey.of("Émile")) < 0);
+        assertTrue(TextKey.of("Émile").compareTo(TextKey.of("Frank")) < 0);
+        assertEquals(TextKey.of("ANNA"), TextKey.of("anna"));
+        assertEquals(TextKey.of("ANNA").hashCode(), TextKey.of("anna").hashCode());
+        assertEquals(TextKey.of("José"), TextKey.of("José"));
+        assertNotEquals(TextKey.of("Emile"), TextKey.of("Émile"));
+    }
+
+    @Test
+    void staysSortedThroughChanges() {
+        Random random = new Random(3);
+        NameIndex index = new NameIndex();
+        for (int i = 0; i < 200; i++) {
+            index.add(new Contact(WORDS[random.nextInt(WORDS.length)] + " " + i, "", ""));
+        }
+        ContactListModel model = new ContactListModel();
+        model.setNames(index);
+        assertEquals(index.names(), shown(model));
+
+        for (int i = 0; i < 2000; i++) {
+            List<String> names = index.names();
+            String name = names.get(random.nextInt(names.size()));
+            Contact c = index.get(name);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    Contact added = new Contact(WORDS[random.nextInt(WORDS.length)] + " x" + i, "", "");
+                    if (index.add(added))
+                        model.add(added.getName());
+                }
+                case 1 -> {
+                    index.remove(c);
+                    model.remove(name);
+                }
+                default -> {
+                    String renamed = WORDS[random.nextInt(WORDS.length)] + " y" + i;
+                    c.setName(renamed);
+                    if (index.rename(c, name))
+                        model.rename(name, renamed);
+                    else
+                        c.setName(name);
+                }
+            }
+            assertEquals(index.names(), shown(model));
+        }
+
+        for (String name : index.names()) {
+            assertEquals(name, model.getElementAt(model.indexOf(name)));
+        }
+        assertEquals(-1, model.indexOf("nobody"));
+    }
+
+    @Test
+    void onlyChangedRowsAreReported() {
+        NameIndex index = new NameIndex();
+        index.addAll(List.of(new Contact("Anna", "", ""), new Contact("Bob", "", ""), new Contact("Dora", "", "")));
+        ContactListModel model = new ContactListModel();
+        model.setNames(index);
+        List<String> events = new ArrayList<>();
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+            }
+        });
+
+        model.add("Carl");
+        model.rename("Bob", "Bobby");
+        model.rename("Anna", "Eve");
+        model.remove("Dora");
+        model.remove("Nobody");
+        assertEquals(List.of("added 2-2", "changed 1-1", "removed 0-0", "added 3-3", "removed 2-2"), events);
+        assertEquals(List.of("Bobby", "Carl", "Eve"), shown(model));
+    }
+
+    @Test
+    void previewIsSearchedByName() {
+        List<String> sorted = new ArrayList<>(List.of(WORDS));
+        sorted.sort(NameIndex.ORDER);
+        ContactListModel model = new ContactListModel();
+        model.preview(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i, model.indexOf(sorted.get(i)));
+        }
+    }
+}
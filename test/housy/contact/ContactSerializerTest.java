@@ -0,0 +1,193 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ContactSerializerTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Contact> load(long mappedThreshold) throws IOException, ClassNotFoundException {
+        ContactSerializer serializer = new ContactSerializer(dir);
+        serializer.setMappedThreshold(mappedThreshold);
+        return serializer.loadContacts();
+    }
+
+    private List<Contact> load(SearchIndex index) throws IOException, ClassNotFoundException {
+        ContactSerializer serializer = new ContactSerializer(dir);
+        List<Contact> loaded = new ArrayList<>();
+        serializer.loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, loaded::addAll, index);
+        serializer.close();
+        return loaded;
+    }
+
+    /*
+     * Saves the contacts the way the application does, with an index that
+     * holds them.
+     */
+    private void saveIndexed(List<Contact> contacts) throws IOException, ClassNotFoundException {
+        ContactSerializer serializer = new ContactSerializer(dir);
+        SearchIndex index = new SearchIndex();
+        serializer.loadContacts(ContactSerializer.DEFAULT_BATCH_SIZE, batch -> {
+        }, index);
+        index.addAll(contacts);
+        serializer.save(contacts);
+        serializer.close();
+    }
+
+    private static List<String> names(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getName).toList();
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.seek(position);
+            int b = f.read();
+            f.seek(position);
+            f.write(b ^ 0xFF);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, Long.MAX_VALUE})
+    void snapshotRoundTripsInNameOrder(long mappedThreshold) throws IOException, ClassNotFoundException {
+        new ContactSerializer(dir).save(TestContacts.sample());
+
+        List<Contact> loaded = load(mappedThreshold);
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(loaded));
+        List<String> sorted = new ArrayList<>(names(loaded));
+        sorted.sort(NameIndex.ORDER);
+        assertEquals(sorted, names(loaded));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, Long.MAX_VALUE})
+    void journalIsAppliedOnTopOfTheSnapshot(long mappedThreshold) throws IOException, ClassNotFoundException {
+        ContactSerializer serializer = new ContactSerializer(dir);
+        serializer.save(TestContacts.sample());
+        Contact added = TestContacts.contact("Dora", "4", " ", " ");
+        Contact edited = TestContacts.contact("bob", "99", " ", " ");
+        serializer.append(List.of(ContactJournal.Entry.add(added),
+                ContactJournal.Entry.update("bob", edited),
+                ContactJournal.Entry.delete(TestContacts.sample().get(0))));
+
+        List<Contact> loaded = load(mappedThreshold);
+        assertEquals(List.of("bob", "Dora", "José Álvarez", "Zoë Zhang", "李小龙"),
+                names(loaded).stream().sorted(NameIndex.ORDER).toList());
+        assertEquals("99", loaded.stream().filter(c -> c.getName().equals("bob")).findFirst().orElseThrow().getPhone());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, Long.MAX_VALUE})
+    void unsortedVersionIsRead(long mappedThreshold) throws IOException, ClassNotFoundException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(dir.resolve("contacts.cs").toFile()))) {
+            out.writeInt(ContactCodec.MAGIC);
+            out.writeByte(ContactCodec.UNSORTED_VERSION);
+            out.writeInt(TestContacts.sample().size());
+            for (Contact c : TestContacts.sample()) {
+                ContactCodec.writeRecord(out, c, c.getName());
+            }
+        }
+
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(load(mappedThreshold)));
+        ContactSerializer serializer = new ContactSerializer(dir);
+        serializer.setMappedThreshold(0);
+        assertNull(serializer.preview());
+    }
+
+    @Test
+    void legacyFileIsMigrated() throws IOException, ClassNotFoundException {
+        Path file = dir.resolve("contacts.cs");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file.toFile()))) {
+            out.writeObject(new ArrayList<>(TestContacts.sample()));
+        }
+        byte[] legacy = Files.readAllBytes(file);
+
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(load(Long.MAX_VALUE)));
+        assertArrayEquals(legacy, Files.readAllBytes(dir.resolve("contacts.cs.old")));
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile()))) {
+            assertNotEquals(ContactCodec.LEGACY_MAGIC, in.readInt());
+        }
+        assertEquals(TestContacts.fields(TestContacts.sample()), TestContacts.fields(load(0)));
+    }
+
+    @Test
+    void previewShowsTheSnapshotNames() throws IOException {
+        ContactSerializer serializer = new ContactSerializer(dir);
+        serializer.save(TestContacts.sample());
+        assertNull(serializer.preview());
+        serializer.setMappedThreshold(0);
+
+        MappedContactStore preview = serializer.preview();
+        assertNotNull(preview);
+        assertTrue(preview.isSorted());
+        assertEquals(TestContacts.sample().stream().map(Contact::getName).sorted(NameIndex.ORDER).toList(), preview.names());
+    }
+
+    @Test
+    void corruptOffsetTableHasNoPreview() throws IOException {
+        new ContactSerializer(dir).save(TestContacts.sample());
+        Path file = dir.resolve("contacts.cs");
+        flipByte(file, Files.size(file) - 3);
+
+        ContactSerializer serializer = new ContactSerializer(dir);
+        serializer.setMappedThreshold(0);
+        assertNull(serializer.preview());
+    }
+
+    @Test
+    void savedIndexIsUsed() throws IOException, ClassNotFoundException {
+        saveIndexed(TestContacts.sample());
+        assertTrue(Files.exists(dir.resolve("contacts.idx")));
+
+        Metrics.Histogram restore = Metrics.histogram("index.restore.nanos");
+        long restored = restore.getCount();
+        SearchIndex index = new SearchIndex();
+        List<Contact> loaded = load(index);
+        assertEquals(restored + 1, restore.getCount());
+        assertEquals(List.of("José Álvarez"), names(index.search("jose")));
+        assertSame(loaded.stream().filter(c -> c.getName().equals("Anna Bell")).findFirst().orElseThrow(), index.search("anna").get(0));
+    }
+
+    @Test
+    void staleIndexIsBuiltAgain() throws IOException, ClassNotFoundException {
+        saveIndexed(TestContacts.sample());
+        // Saved without an index, which leaves the old one behind.
+        new ContactSerializer(dir).save(List.of(TestContacts.contact("Erik Engel", "5", " ", " ")));
+
+        SearchIndex index = new SearchIndex();
+        load(index);
+        assertEquals(List.of("Erik Engel"), names(index.search("erik")));
+        assertTrue(index.search("anna").isEmpty());
+
+        // The index built instead was saved for the next load.
+        Metrics.Histogram restore = Metrics.histogram("index.restore.nanos");
+        long restored = restore.getCount();
+        index = new SearchIndex();
+        load(index);
+        assertEquals(restored + 1, restore.getCount());
+        assertEquals(List.of("Erik Engel"), names(index.search("erik")));
+    }
+
+    @Test
+    void corruptIndexIsBuiltAgain() throws IOException, ClassNotFoundException {
+        saveIndexed(TestContacts.sample());
+        Path file = dir.resolve("contacts.idx");
+        flipByte(file, Files.size(file) / 2);
+
+        SearchIndex index = new SearchIndex();
+        load(index);
+        assertEquals(List.of("José Álvarez"), names(index.search("jose")));
+        assertEquals(List.of("Zoë Zhang"), names(index.search("zoe")));
+    }
+}
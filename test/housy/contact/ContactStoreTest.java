@@ -0,0 +1,77 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the store against a plain map of ids through adds and removes,
+ * enough of them to grow the table and wrap its probe runs.
+ */
+class ContactStoreTest {
+
+    private final Random random = new Random(17);
+
+    private static void assertHolds(Map<Long, Contact> expected, ContactStore store, List<Contact> all) {
+        assertEquals(expected.size(), store.size());
+        assertEquals(expected.isEmpty(), store.isEmpty());
+        for (Contact c : all) {
+            assertEquals(expected.get(c.getId()), store.get(c.getId()));
+            assertEquals(expected.containsKey(c.getId()), store.contains(c));
+        }
+        List<Contact> iterated = new ArrayList<>();
+        store.forEach(iterated::add);
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(iterated));
+        assertEquals(expected.size(), iterated.size());
+        assertEquals(iterated, store.stream().toList());
+        assertEquals(iterated, store.toList());
+    }
+
+    @Test
+    void changesMatchAMap() {
+        List<Contact> all = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            all.add(new Contact("Contact " + i, "", ""));
+        }
+        Map<Long, Contact> expected = new HashMap<>();
+        ContactStore store = new ContactStore();
+        store.addAll(all.subList(0, 1000));
+        for (Contact c : all.subList(0, 1000)) {
+            expected.put(c.getId(), c);
+        }
+        assertHolds(expected, store, all);
+
+        for (int i = 0; i < 20_000; i++) {
+            Contact c = all.get(random.nextInt(all.size()));
+            if (random.nextInt(3) > 0) {
+                assertEquals(!expected.containsKey(c.getId()), store.add(c));
+                expected.put(c.getId(), c);
+            } else {
+                assertEquals(expected.remove(c.getId()) != null, store.remove(c));
+            }
+            if (i % 1000 == 0)
+                assertHolds(expected, store, all);
+        }
+        assertHolds(expected, store, all);
+    }
+
+    @Test
+    void snapshotDoesNotChangeWithTheStore() {
+        ContactStore store = new ContactStore();
+        Contact anna = new Contact("Anna", "", "");
+        Contact bob = new Contact("Bob", "", "");
+        store.addAll(List.of(anna, bob));
+        List<Contact> snapshot = store.toList();
+        store.remove(anna);
+        assertEquals(List.of(anna, bob), snapshot);
+        assertEquals(List.of(bob), store.toList());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(anna));
+        assertNull(store.get(anna.getId()));
+    }
+}
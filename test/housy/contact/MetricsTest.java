@@ -0,0 +1,69 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    @Test
+    void percentilesAreWithinTheBucketError() {
+        Metrics.Histogram histogram = Metrics.histogram("test.percentiles.nanos");
+        Random random = new Random(19);
+        long[] values = new long[20_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 40);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double fraction : new double[] {0.01, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long expected = values[(int) Math.ceil(fraction * values.length) - 1];
+            long actual = histogram.percentile(fraction);
+            assertTrue(actual >= expected && actual <= expected + expected / 60, fraction + ": " + expected + " " + actual);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        Metrics.Histogram histogram = Metrics.histogram("test.small.bytes");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(101, histogram.getCount());
+        assertEquals(50, histogram.getP50());
+        assertEquals(90, histogram.getP90());
+        assertEquals(100, histogram.getMax());
+        assertEquals(5050 / 101.0, histogram.getMean(), 1e-9);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getP99());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    void metricsAreRegisteredOnce() throws JMException {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        counter.add(2);
+        Metrics.counter("test.counter").increment();
+        assertEquals(3, counter.getCount());
+        assertThrows(IllegalArgumentException.class, () -> Metrics.histogram("test.counter"));
+
+        Metrics.Gauge gauge = Metrics.gauge("test.gauge", () -> 1);
+        Metrics.gauge("test.gauge", () -> 2);
+        assertEquals(2, gauge.getValue());
+
+        ObjectName name = new ObjectName("housy.contact:type=Counter,name=" + ObjectName.quote("test.counter"));
+        assertEquals(3L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+        assertTrue(Metrics.report().contains("test.gauge: "));
+    }
+}
@@ -0,0 +1,73 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class NameIndexTest {
+
+    @Test
+    void namesAreLookedUpWithoutCase() {
+        NameIndex index = new NameIndex();
+        Contact anna = new Contact("Anna Bell", "", "");
+        Contact jose = new Contact("José", "", "");
+        assertTrue(index.add(anna));
+        assertTrue(index.add(jose));
+
+        assertSame(anna, index.get("ANNA BELL"));
+        assertSame(jose, index.get("josé"));
+        assertNull(index.get("Jose"));
+        assertNull(index.get(null));
+        assertFalse(index.add(new Contact("anna bell", "", "")));
+        assertEquals(2, index.size());
+
+        index.remove(anna);
+        assertFalse(index.contains("Anna Bell"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void renameKeepsNamesUnique() {
+        NameIndex index = new NameIndex();
+        Contact anna = new Contact("Anna", "", "");
+        Contact bob = new Contact("Bob", "", "");
+        index.addAll(List.of(anna, bob));
+
+        bob.setName("ANNA");
+        assertFalse(index.rename(bob, "Bob"));
+        bob.setName("Bob");
+        assertSame(bob, index.get("bob"));
+
+        anna.setName("ANNA");
+        assertTrue(index.rename(anna, "Anna"));
+        assertEquals(List.of("ANNA", "Bob"), index.names());
+        anna.setName("Carl");
+        assertTrue(index.rename(anna, "ANNA"));
+        assertNull(index.get("anna"));
+        assertEquals(List.of("Bob", "Carl"), index.names());
+    }
+
+    @Test
+    void namesStaySorted() {
+        Random random = new Random(23);
+        String[] words = {"anna", "Émile", "emile", "Zoë", "zoe", "bob", "李", "Ærø", "de Vries", "Øst"};
+        NameIndex index = new NameIndex();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Contact c = new Contact(words[random.nextInt(words.length)] + " " + random.nextInt(100), "", "");
+            if (index.add(c))
+                contacts.add(c);
+            if (random.nextInt(4) == 0)
+                index.remove(contacts.remove(random.nextInt(contacts.size())));
+        }
+
+        List<String> names = index.names();
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(NameIndex.ORDER);
+        assertEquals(sorted, names);
+        assertEquals(contacts.size(), names.size());
+    }
+}
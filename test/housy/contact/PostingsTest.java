@@ -0,0 +1,80 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks postings against a plain map through adds and removes, and that
+ * earlier versions stay as they were.
+ */
+class PostingsTest {
+
+    private final Random random = new Random(11);
+
+    private static void assertHolds(IdentityHashMap<Contact, IndexedValues> expected, Postings postings, List<Contact> all) {
+        assertEquals(expected.size(), postings.size());
+        assertEquals(expected.isEmpty(), postings.isEmpty());
+        for (Contact c : all) {
+            assertEquals(expected.containsKey(c), postings.contains(c));
+        }
+        IdentityHashMap<Contact, IndexedValues> actual = postings.toMap(0);
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<Contact, IndexedValues> e : expected.entrySet()) {
+            assertSame(e.getValue(), actual.get(e.getKey()));
+        }
+    }
+
+    @Test
+    void changesMatchAMap() {
+        List<Contact> all = new ArrayList<>();
+        IdentityHashMap<Contact, IndexedValues> values = new IdentityHashMap<>();
+        for (int i = 0; i < 400; i++) {
+            Contact c = new Contact("Contact " + i, "", "");
+            all.add(c);
+            values.put(c, new IndexedValues(SearchField.normalizedValues(c)));
+        }
+        IdentityHashMap<Contact, IndexedValues> expected = new IdentityHashMap<>();
+        for (Contact c : all.subList(0, 300)) {
+            expected.put(c, values.get(c));
+        }
+        Postings postings = Postings.of(new IdentityHashMap<>(expected));
+        assertHolds(expected, postings, all);
+
+        Postings earlier = postings;
+        IdentityHashMap<Contact, IndexedValues> earlierExpected = new IdentityHashMap<>(expected);
+        for (int i = 0; i < 3000; i++) {
+            Contact c = all.get(random.nextInt(all.size()));
+            // The index only files a contact under a gram it is not filed under yet.
+            if (!expected.containsKey(c)) {
+                postings = postings.with(c, values.get(c));
+                expected.put(c, values.get(c));
+            } else {
+                postings = postings.without(c);
+                expected.remove(c);
+            }
+            assertHolds(expected, postings, all);
+            if (i == 40) {
+                earlier = postings;
+                earlierExpected = new IdentityHashMap<>(expected);
+            }
+        }
+        assertHolds(earlierExpected, earlier, all);
+    }
+
+    @Test
+    void emptyHoldsNothing() {
+        Contact c = new Contact("Anna", "", "");
+        IndexedValues values = new IndexedValues(SearchField.normalizedValues(c));
+        assertTrue(Postings.EMPTY.isEmpty());
+        Postings one = Postings.EMPTY.with(c, values);
+        assertTrue(one.contains(c));
+        assertTrue(Postings.EMPTY.isEmpty());
+        assertTrue(one.without(c).isEmpty());
+    }
+}
@@ -0,0 +1,216 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the index against a scan that matches the query with every
+ * contact, through any mix of adds, removes and edits.
+ */
+class SearchIndexTest {
+
+    private static final String[] WORDS = {
+        "anna", "bell", "José", "Álvarez", "zoë", "van", "dijk", "de", "vries", "smith", "smithson", "ann", "li"
+    };
+    private static final String[] DOMAINS = {"@example.com", "@acme.org", "@mail.es"};
+
+    private final Random random = new Random(7);
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private Contact contact() {
+        Contact c = new Contact(word() + " " + word(), phone(), email());
+        c.setNotes(random.nextBoolean() ? " " : "met " + word() + ", at work");
+        return c;
+    }
+
+    private String phone() {
+        return "+31 6 " + random.nextInt(1000);
+    }
+
+    private String email() {
+        return word().toLowerCase() + random.nextInt(10) + DOMAINS[random.nextInt(DOMAINS.length)];
+    }
+
+    private static Set<Contact> scan(List<Contact> contacts, List<String[]> values, String term) {
+        SearchQuery query = SearchQuery.parse(term);
+        Set<Contact> found = new HashSet<>();
+        if (query.isEmpty())
+            return found;
+        for (int i = 0; i < contacts.size(); i++) {
+            if (query.score(values.get(i)) >= 0)
+                found.add(contacts.get(i));
+        }
+        return found;
+    }
+
+    private List<String> terms() {
+        List<String> terms = new ArrayList<>(List.of("a", "an", "ann", "anna bell", "jose", "ALVAREZ", "alv", "zoe",
+                "van dijk", "name:smith", "smith email:acme", "phone:31 6", "phone:12", "notes:work", "notes:met anna",
+                "email:example.com", "@mail", "li", "xyz", "name:de vries"));
+        for (int i = 0; i < 30; i++) {
+            String word = TextKey.fold(word());
+            int start = random.nextInt(word.length());
+            terms.add(word.substring(start, start + 1 + random.nextInt(word.length() - start)));
+        }
+        return terms;
+    }
+
+    private void assertMatchesScan(SearchIndex index, List<Contact> contacts, boolean fuzzy) {
+        List<String[]> values = contacts.stream().map(SearchField::normalizedValues).toList();
+        for (String term : terms()) {
+            List<Contact> found = index.search(term);
+            assertEquals(found.size(), new HashSet<>(found).size(), term);
+            assertEquals(scan(contacts, values, term), new HashSet<>(found), term);
+            if (fuzzy)
+                assertTrue(index.searchFuzzy(term).containsAll(found), term);
+        }
+    }
+
+    @Test
+    void substringsOfAnyLengthAreFound() {
+        Contact anna = new Contact("Anna Bell", "555 0101", "anna@example.com");
+        Contact bob = new Contact("Bob Smithson", "555 0202", "bob@acme.org");
+        SearchIndex index = new SearchIndex();
+        index.addAll(List.of(anna, bob));
+
+        assertEquals(Set.of(anna, bob), new HashSet<>(index.search("b")));
+        assertEquals(List.of(anna), index.search("nn"));
+        assertEquals(List.of(bob), index.search("thso"));
+        assertEquals(List.of(anna), index.search("ANNA BELL"));
+        assertTrue(index.search("bellx").isEmpty());
+        assertTrue(index.search(" ").isEmpty());
+    }
+
+    @Test
+    void searchMatchesScanThroughChanges() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            contacts.add(contact());
+        }
+        SearchIndex index = new SearchIndex();
+        index.addAll(contacts.subList(0, 200));
+        for (Contact c : contacts.subList(200, 300)) {
+            index.addContact(c);
+        }
+        assertMatchesScan(index, contacts, true);
+
+        for (int i = 0; i < 50; i++) {
+            index.remove(contacts.remove(random.nextInt(contacts.size())));
+        }
+        assertMatchesScan(index, contacts, true);
+
+        for (int i = 0; i < 200; i++) {
+            Contact c = contacts.get(random.nextInt(contacts.size()));
+            switch (random.nextInt(4)) {
+                case 0 -> c.setName(word() + " " + word());
+                case 1 -> c.setPhone(phone());
+                case 2 -> c.setEmail(email());
+                default -> c.setNotes("met " + word());
+            }
+            index.update(c);
+        }
+        assertMatchesScan(index, contacts, true);
+
+        // Edits back and forth end up where they started.
+        Contact c = contacts.get(0);
+        String name = c.getName();
+        c.setName("Zz Top");
+        index.update(c);
+        c.setName(name);
+        index.update(c);
+        assertMatchesScan(index, contacts, true);
+        assertTrue(index.search("zz top").isEmpty());
+    }
+
+    @Test
+    void readersSeeUnchangedContactsWhileWritersChangeOthers() throws InterruptedException {
+        List<Contact> stable = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            stable.add(new Contact("Anna Stable " + i, phone(), email()));
+        }
+        List<Contact> changing = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            changing.add(contact());
+        }
+        SearchIndex index = new SearchIndex();
+        index.addAll(stable);
+        index.addAll(changing);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        assertTrue(index.search("anna stable").containsAll(stable));
+                        assertTrue(index.searchFuzzy("ana stable").containsAll(stable));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        Random writes = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            Contact c = changing.get(writes.nextInt(changing.size()));
+            switch (writes.nextInt(3)) {
+                case 0 -> index.remove(c);
+                case 1 -> index.addContact(c);
+                default -> {
+                    c.setName(WORDS[writes.nextInt(WORDS.length)] + " " + i);
+                    index.update(c);
+                }
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    void largeBatchesAreIndexedInParallel() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            contacts.add(contact());
+        }
+        SearchIndex index = new SearchIndex();
+        index.addAll(contacts.subList(0, 1000));
+        index.addAll(contacts.subList(1000, contacts.size()));
+        assertEquals(contacts.size(), index.size());
+        assertMatchesScan(index, contacts, false);
+    }
+
+    @Test
+    void editLeavesTheSameGramsAsAFreshIndex() {
+        Contact c = new Contact("Anna Bell", "555 0101", "anna@example.com");
+        SearchIndex index = new SearchIndex();
+        index.addContact(c);
+        c.setPhone("555 0102");
+        index.update(c);
+
+        assertEquals(List.of(c), index.search("phone:0102"));
+        assertTrue(index.search("phone:0101").isEmpty());
+        assertEquals(List.of(c), index.search("anna bell"));
+        SearchIndex fresh = new SearchIndex();
+        fresh.addContact(c);
+        assertEquals(fresh.gramCount(), index.gramCount());
+        assertEquals(fresh.wordCount(), index.wordCount());
+    }
+}
@@ -0,0 +1,72 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SearchQueryTest {
+
+    private static final String[] ANNA = SearchField.normalizedValues(
+            TestContacts.contact("Anna Bell", "+31 6 1234", "anna@acme.org", "Met José at work"));
+
+    @Test
+    void prefixesStartClauses() {
+        SearchQuery query = SearchQuery.parse("  anna bogus:x  email:acme org PHONE:12 ");
+        List<SearchQuery.Clause> clauses = query.getClauses();
+        assertEquals(3, clauses.size());
+        assertNull(clauses.get(0).getField());
+        assertEquals("anna bogus:x", clauses.get(0).phrase(SearchField.NAME));
+        assertEquals(SearchField.EMAIL, clauses.get(1).getField());
+        assertEquals("acme org", clauses.get(1).phrase(SearchField.EMAIL));
+        assertEquals("", clauses.get(1).phrase(SearchField.NAME));
+        assertEquals(SearchField.PHONE, clauses.get(2).getField());
+        assertEquals("12", clauses.get(2).phrase(SearchField.PHONE));
+        assertTrue(SearchQuery.parse(" ").isEmpty());
+        assertTrue(SearchQuery.parse(null).isEmpty());
+    }
+
+    @Test
+    void everyClauseMustMatch() {
+        assertTrue(SearchQuery.parse("anna email:acme").score(ANNA) >= 0);
+        assertTrue(SearchQuery.parse("jose").score(ANNA) >= 0);
+        assertTrue(SearchQuery.parse("phone:31 6").score(ANNA) >= 0);
+        assertEquals(-1, SearchQuery.parse("anna email:example").score(ANNA));
+        assertEquals(-1, SearchQuery.parse("name:jose").score(ANNA));
+        assertEquals(-1, SearchQuery.parse("phone:abc").score(ANNA));
+    }
+
+    @Test
+    void scoresFollowFieldWeightAndHowWellItMatched() {
+        int inName = SearchQuery.parse("bell").score(ANNA);
+        int startOfName = SearchQuery.parse("anna b").score(ANNA);
+        int wholeName = SearchQuery.parse("anna bell").score(ANNA);
+        int inNotes = SearchQuery.parse("work").score(ANNA);
+        assertTrue(inNotes < inName);
+        assertTrue(inName < startOfName);
+        assertTrue(startOfName < wholeName);
+        // The best field counts: "anna" is also in the email.
+        assertEquals(SearchQuery.parse("name:anna").score(ANNA), SearchQuery.parse("anna").score(ANNA));
+    }
+
+    @Test
+    void longerTermsNarrowTheResults() {
+        assertTrue(SearchIndex.narrows("ann", "anna"));
+        assertTrue(SearchIndex.narrows("anna", "anna email:acme"));
+        assertTrue(SearchIndex.narrows("email:ac", "email:acme"));
+        assertFalse(SearchIndex.narrows("anna", "ann"));
+        assertFalse(SearchIndex.narrows("name:ann", "email:anna"));
+        assertFalse(SearchIndex.narrows("", "anna"));
+    }
+
+    @Test
+    void indexRanksBetterMatchesFirst() {
+        Contact notes = TestContacts.contact("Carl", "1", "carl@example.com", "ask bell about it");
+        Contact name = TestContacts.contact("Dora Bell", "2", "dora@example.com", " ");
+        Contact exact = TestContacts.contact("Bell", "3", "b@example.com", " ");
+        SearchIndex index = new SearchIndex();
+        index.addAll(List.of(notes, name, exact));
+        assertEquals(List.of(exact, name, notes), index.search("bell"));
+        assertEquals(List.of(exact, name, notes), index.refine(List.of(notes, name, exact), "bell"));
+    }
+}
@@ -0,0 +1,100 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the automaton against a plain optimal string alignment distance
+ * computed for every word.
+ */
+class TermDictionaryTest {
+
+    private final Random random = new Random(13);
+
+    private static int osa(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private String word() {
+        char[] chars = new char[1 + random.nextInt(7)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "abcde".charAt(random.nextInt(5));
+        }
+        return new String(chars);
+    }
+
+    @Test
+    void distanceCountsSwapsAsOneEdit() {
+        assertEquals(1, TermDictionary.distance("jose", "jsoe", 2));
+        assertEquals(1, TermDictionary.distance("anna", "ana", 2));
+        assertEquals(1, TermDictionary.distance("smith", "smyth", 1));
+        assertEquals(2, TermDictionary.distance("smith", "msiht", 1));
+        assertEquals(0, TermDictionary.distance("bell", "bell", 0));
+        assertEquals(3, TermDictionary.distance("a", "abcdef", 2));
+    }
+
+    @Test
+    void matchFindsEveryWordWithinTheDistance() {
+        TermDictionary dictionary = new TermDictionary();
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String w = word();
+            if (!words.contains(w))
+                words.add(w);
+            dictionary.add(w);
+        }
+        for (int i = 0; i < 100; i++) {
+            dictionary.remove(words.remove(random.nextInt(words.size())));
+        }
+        assertEquals(words.size(), dictionary.size());
+
+        for (int i = 0; i < 200; i++) {
+            String query = word();
+            int max = 1 + random.nextInt(2);
+            Map<String, Integer> expected = new HashMap<>();
+            for (String w : words) {
+                int d = osa(query, w);
+                assertEquals(Math.min(d, max + 1), TermDictionary.distance(query, w, max), query + " " + w);
+                if (d <= max)
+                    expected.put(w, d);
+            }
+            assertEquals(expected, new HashMap<>(dictionary.match(query, max)), query);
+        }
+    }
+
+    @Test
+    void fuzzySearchPutsExactMatchesFirst() {
+        Contact jose = new Contact("José Álvarez", "1", "jose@example.es");
+        Contact joss = new Contact("Joss Stone", "2", "joss@example.com");
+        Contact anna = new Contact("Anna Bell", "3", "anna@example.com");
+        SearchIndex index = new SearchIndex();
+        index.addAll(List.of(jose, joss, anna));
+
+        assertEquals(List.of(jose), index.searchFuzzy("jsoe"));
+        assertEquals(List.of(joss, jose), index.searchFuzzy("joss"));
+        assertEquals(List.of(jose), index.searchFuzzy("jose alvrez"));
+        assertEquals(List.of(anna), index.searchFuzzy("email:anna"));
+        assertTrue(index.searchFuzzy("xyzzy").isEmpty());
+    }
+}
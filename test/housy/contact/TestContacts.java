@@ -0,0 +1,44 @@
+package housy.contact;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Builds contacts and compares them by their fields, since contacts are
+ * only equal to themselves.
+ */
+final class TestContacts {
+
+    private TestContacts() {
+    }
+
+    static Contact contact(String name, String phone, String email, String notes) {
+        Contact c = new Contact(name, phone, email);
+        c.setNotes(notes);
+        return c;
+    }
+
+    static List<Contact> sample() {
+        return List.of(
+                contact("Anna Bell", "555-0101", "anna@example.com", " "),
+                contact("José Álvarez", "+34 600 123 456", "jose@example.es", "Met in Madrid\nlikes \"tapas\", wine"),
+                contact("Zoë Zhang", " ", " ", " "),
+                contact("李小龙", "12345", "bruce@example.cn", "ﬁle"),
+                contact("bob", "0", "bob@example.org", "semi;colon"));
+    }
+
+    /*
+     * Blank fields compare as empty, the exporter and importer do not keep
+     * the single space the editor stores.
+     */
+    static List<String> fields(Contact c) {
+        return Arrays.stream(new String[] {c.getName(), c.getPhone(), c.getEmail(), c.getNotes()})
+                .map(value -> value == null || value.isBlank() ? "" : value)
+                .toList();
+    }
+
+    static List<List<String>> fields(Collection<Contact> contacts) {
+        return contacts.stream().map(TestContacts::fields).sorted((a, b) -> a.toString().compareTo(b.toString())).toList();
+    }
+}
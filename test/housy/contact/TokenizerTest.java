@@ -0,0 +1,40 @@
+package housy.contact;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TokenizerTest {
+
+    private static String[] name(String text) {
+        return SearchField.NAME.tokenize(SearchField.NAME.normalize(text));
+    }
+
+    @Test
+    void namesSplitOnPunctuationButNotApostrophes() {
+        assertArrayEquals(new String[] {"smith", "john"}, name("Smith, John"));
+        assertArrayEquals(new String[] {"jean", "luc", "picard"}, name("Jean-Luc Picard"));
+        assertArrayEquals(new String[] {"o'brien"}, name("O'Brien"));
+        assertArrayEquals(new String[] {"d’arcy", "jose"}, name("D’Arcy (José)"));
+        assertArrayEquals(new String[] {"anna", "bell"}, name("anna bell　"));
+        assertArrayEquals(new String[0], name(" - "));
+    }
+
+    @Test
+    void otherFieldsKeepTheirSeparators() {
+        assertArrayEquals(new String[] {"anna.bell", "example.com"}, SearchField.EMAIL.tokenize("anna.bell@example.com"));
+        assertArrayEquals(new String[] {"0612345678"}, SearchField.PHONE.tokenize(SearchField.PHONE.normalize("06-123 45 678")));
+        assertArrayEquals(new String[] {"met", "in", "2019", "x"}, SearchField.NOTES.tokenize("met in 2019, x!"));
+    }
+
+    @Test
+    void offsetsMatchTheSplit() {
+        String text = "  a𝒳b--c ";
+        List<String> words = new ArrayList<>();
+        Tokenizer.forEach(text, Tokenizer.NOT_NAME, (start, end) -> words.add(text.substring(start, end)));
+        assertEquals(List.of("a𝒳b", "c"), words);
+        assertArrayEquals(words.toArray(new String[0]), Tokenizer.split(text, Tokenizer.NOT_NAME));
+    }
+}